@@ -0,0 +1,73 @@
+package com.mealscan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Compares two JMH JSON result files (-rf json), typically from two commits, benchmark by
+// benchmark. A change counts as a regression only when it is larger than both runs' error bars
+// and the threshold; exits with 1 if any benchmark regressed, so a script can gate on it.
+public class BenchmarkCompare {
+    
+    private static final String USAGE = "Usage: BenchmarkCompare <baseline.json> <candidate.json> [--threshold <percent>]";
+    
+    private record Score(double score, double error, String unit, boolean higherIsBetter) {}
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2 && !(args.length == 4 && "--threshold".equals(args[2]))) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        double threshold = args.length == 4 ? Double.parseDouble(args[3]) : 5.0;
+        Map<String, Score> baseline = load(new File(args[0]));
+        Map<String, Score> candidate = load(new File(args[1]));
+        
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "Baseline", "Candidate", "Change");
+        for (Map.Entry<String, Score> entry : new TreeMap<>(candidate).entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            Score after = entry.getValue();
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", entry.getKey(), "-", after.score(), "new");
+                continue;
+            }
+            double change = (after.score() - before.score()) / before.score() * 100;
+            boolean worse = after.higherIsBetter() ? change < 0 : change > 0;
+            boolean significant = Math.abs(after.score() - before.score()) > before.error() + after.error();
+            String verdict = "";
+            if (worse && significant && Math.abs(change) >= threshold) {
+                verdict = "  REGRESSION";
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%% %s%s%n", entry.getKey(), before.score(), after.score(),
+                              change, after.unit(), verdict);
+        }
+        
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+            System.exit(1);
+        }
+    }
+    
+    private static Map<String, Score> load(File file) throws Exception {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(run.get("benchmark").asText());
+            JsonNode params = run.get("params");
+            if (params != null) {
+                params.fields().forEachRemaining(param -> key.append(' ').append(param.getKey()).append('=')
+                                                             .append(param.getValue().asText()));
+            }
+            JsonNode metric = run.get("primaryMetric");
+            String mode = run.get("mode").asText();
+            double error = metric.get("scoreError").isNumber() ? metric.get("scoreError").asDouble() : 0;
+            scores.put(key.toString(), new Score(metric.get("score").asDouble(), error,
+                                                 metric.get("scoreUnit").asText(), "thrpt".equals(mode)));
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,202 @@
+package com.mealscan;
+
+import com.mealscan.config.DatabaseInitializer;
+import com.mealscan.config.ServerSettings;
+import com.mealscan.config.Settings;
+import com.mealscan.dao.RecordDAO;
+import com.mealscan.dao.UserDAO;
+import com.mealscan.model.Record;
+import com.mealscan.model.RecordValidator;
+import org.eclipse.jetty.server.Server;
+
+import java.math.BigDecimal;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+// Starts the server in-process once per thread mode and drives the same closed-loop load at it:
+// a fixed number of clients, each sending its next request as soon as the previous one returns.
+// Thread-pool settings come from the usual mealscan.http.* properties, so both modes share them.
+// Repeat modes (--modes platform,virtual,platform,virtual) to interleave them when results drift.
+// Uses the database in the working directory; run it from a scratch directory.
+public class ThreadModeBenchmark {
+    
+    private static final String USAGE =
+        "Usage: ThreadModeBenchmark [--concurrency <n>] [--warmup <s>] [--duration <s>] [--seed <records>]\n" +
+        "                           [--modes platform,virtual] [--path /api/records?type=mess&limit=50]";
+    
+    private record Result(ServerSettings.ThreadMode mode, boolean virtual, long requests, long errors,
+                          double seconds, long[] latenciesNanos) {
+        double throughput() {
+            return seconds == 0 ? 0 : requests / seconds;
+        }
+        
+        double percentileMillis(double p) {
+            if (latenciesNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100.0 * latenciesNanos.length) - 1;
+            return latenciesNanos[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+    
+    public static void main(String[] args) {
+        int concurrency = 200;
+        int warmupSeconds = 5;
+        int durationSeconds = 20;
+        int seed = 0;
+        String path = "/api/records?type=mess&limit=50";
+        List<ServerSettings.ThreadMode> modes = List.of(ServerSettings.ThreadMode.PLATFORM, ServerSettings.ThreadMode.VIRTUAL);
+        
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                    case "--warmup" -> warmupSeconds = Integer.parseInt(args[++i]);
+                    case "--duration" -> durationSeconds = Integer.parseInt(args[++i]);
+                    case "--seed" -> seed = Integer.parseInt(args[++i]);
+                    case "--path" -> path = args[++i];
+                    case "--modes" -> modes = Arrays.stream(args[++i].split(","))
+                        .map(ServerSettings.ThreadMode::parse).toList();
+                    default -> throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        
+        try {
+            DatabaseInitializer.initialize(Settings.intValue("mealscan.db.poolSize", "MEALSCAN_DB_POOL_SIZE",
+                                                             DatabaseInitializer.DEFAULT_POOL_SIZE));
+            if (seed > 0) {
+                seedRecords(seed);
+            }
+            
+            // Whichever mode runs first would otherwise also pay for JIT warm-up of the whole stack.
+            System.out.println("Priming JIT for " + warmupSeconds * 2 + "s");
+            run(ServerSettings.load().withPort(0), concurrency, warmupSeconds * 2, 0, path);
+            
+            List<Result> results = new ArrayList<>();
+            for (ServerSettings.ThreadMode mode : modes) {
+                results.add(run(ServerSettings.load().withPort(0).withThreadMode(mode),
+                                concurrency, warmupSeconds, durationSeconds, path));
+            }
+            
+            System.out.println();
+            System.out.printf("%-10s %-8s %10s %8s %10s %9s %9s %9s%n",
+                              "mode", "virtual", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms");
+            for (Result result : results) {
+                System.out.printf("%-10s %-8s %10d %8d %10.1f %9.2f %9.2f %9.2f%n",
+                                  result.mode().name().toLowerCase(), result.virtual(), result.requests(),
+                                  result.errors(), result.throughput(), result.percentileMillis(50),
+                                  result.percentileMillis(99), result.percentileMillis(100));
+            }
+            DatabaseInitializer.shutdown();
+            System.exit(0);
+            
+        } catch (Exception e) {
+            System.err.println("Benchmark failed");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+    
+    private static Result run(ServerSettings settings, int concurrency, int warmupSeconds,
+                              int durationSeconds, String path) throws Exception {
+        Server server = ServerBootstrap.createServer(settings);
+        server.start();
+        boolean virtual = ServerBootstrap.usesVirtualThreads(server);
+        String base = "http://localhost:" + ServerBootstrap.localPort(server);
+        System.out.println("Running " + settings.threadMode().name().toLowerCase() + " mode (virtual threads: " + virtual +
+                           ") with " + concurrency + " clients against " + path);
+        
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .cookieHandler(new CookieManager())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        HttpResponse<String> login = client.send(HttpRequest.newBuilder(URI.create(base + "/api/login"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"student@mealscan.com\",\"password\":\"password123\"}"))
+            .build(), HttpResponse.BodyHandlers.ofString());
+        if (login.statusCode() != 200) {
+            server.stop();
+            throw new IllegalStateException("Login failed with " + login.statusCode() + ": " + login.body());
+        }
+        
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+        long measureFrom = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+        long deadline = measureFrom + durationSeconds * 1_000_000_000L;
+        LongAdder errors = new LongAdder();
+        
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        List<Future<long[]>> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(clients.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                long now;
+                while ((now = System.nanoTime()) < deadline) {
+                    boolean ok;
+                    try {
+                        ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+                    } catch (Exception e) {
+                        ok = false;
+                    }
+                    if (now < measureFrom) {
+                        continue;
+                    }
+                    if (!ok) {
+                        errors.increment();
+                        continue;
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - now;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+        
+        long[] all = new long[0];
+        for (Future<long[]> worker : workers) {
+            long[] latencies = worker.get();
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + latencies.length);
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+        }
+        clients.shutdown();
+        server.stop();
+        
+        Arrays.sort(all);
+        return new Result(settings.threadMode(), virtual, all.length, errors.sum(), durationSeconds, all);
+    }
+    
+    private static void seedRecords(int count) throws Exception {
+        UserDAO userDAO = new UserDAO();
+        int studentId = userDAO.findByEmail("student@mealscan.com").getId();
+        int contractorId = userDAO.findByEmail("mess@mealscan.com").getId();
+        
+        List<Record> records = new ArrayList<>(count);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < count; i++) {
+            records.add(RecordValidator.create(studentId, contractorId, Record.RecordType.MESS, i % 2 == 0 ? "Lunch" : "Dinner",
+                                               "Benchmark meal", BigDecimal.valueOf(40 + i % 60), today.minusDays(i % 90)));
+        }
+        new RecordDAO().createRecords(records);
+        System.out.println("Seeded " + count + " records");
+    }
+}
@@ -0,0 +1,34 @@
+package com.mealscan.auth;
+
+import org.mindrot.jbcrypt.BCrypt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// One login's worth of BCrypt.checkpw per cost factor, to size the auth executor and to see what
+// raising mealscan.bcrypt.cost would cost. Each step up doubles the work.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PasswordCheckBenchmark {
+    
+    private static final String PASSWORD = "password123";
+    
+    @Param({"4", "10", "12"})
+    private int cost;
+    
+    private String hash;
+    
+    @Setup
+    public void setUp() {
+        hash = BCrypt.hashpw(PASSWORD, BCrypt.gensalt(cost));
+    }
+    
+    @Benchmark
+    public boolean checkpw() {
+        return BCrypt.checkpw(PASSWORD, hash);
+    }
+}
@@ -0,0 +1,49 @@
+package com.mealscan.auth;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// What signed-token auth adds per request: issuing at login and verifying on every call. Each Mac
+// is per thread, so the single-threaded numbers hold per request thread.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenBenchmark {
+    
+    private TokenSigner signer;
+    private UserPrincipal principal;
+    private Instant expiresAt;
+    private Instant now;
+    private String token;
+    
+    @Setup
+    public void setUp() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        signer = new TokenSigner(Map.of("bench", key));
+        principal = new UserPrincipal(42, "STUDENT", "Benchmark Student");
+        now = Instant.now();
+        expiresAt = now.plusSeconds(3600);
+        token = signer.issue(principal, expiresAt);
+        if (signer.verify(token, now) == null) {
+            throw new IllegalStateException("Token failed to verify");
+        }
+    }
+    
+    @Benchmark
+    public String issue() {
+        return signer.issue(principal, expiresAt);
+    }
+    
+    @Benchmark
+    public TokenSigner.Verified verify() {
+        return signer.verify(token, now);
+    }
+}
@@ -0,0 +1,96 @@
+package com.mealscan.dao;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+// Row mapping as the listings do it: the joined query over an in-memory H2 database, each row
+// turned into a Record by extractRecord. iterateOnly runs the same query touching one column per
+// row, so the difference between the two is the mapping itself.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordMappingBenchmark {
+    
+    @Param({"50", "1000"})
+    private int rows;
+    
+    private Connection conn;
+    private PreparedStatement query;
+    private RecordDAO recordDAO;
+    
+    @Setup
+    public void setUp() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:record-mapping;DB_CLOSE_DELAY=-1");
+        conn = dataSource.getConnection();
+        recordDAO = new RecordDAO(dataSource);
+        
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+            stmt.execute("""
+                CREATE TABLE users (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255) NOT NULL)
+            """);
+            stmt.execute("""
+                CREATE TABLE records (
+                    id INT AUTO_INCREMENT PRIMARY KEY,
+                    student_id INT NOT NULL,
+                    contractor_id INT NOT NULL,
+                    type VARCHAR(20) NOT NULL,
+                    meal_type VARCHAR(50) NOT NULL,
+                    items TEXT NOT NULL,
+                    cost DECIMAL(10, 2) NOT NULL,
+                    record_date DATE NOT NULL,
+                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+            stmt.execute("INSERT INTO users (name) VALUES ('John Doe'), ('Mess Contractor')");
+            stmt.execute("""
+                INSERT INTO records (student_id, contractor_id, type, meal_type, items, cost, record_date)
+                SELECT 1, 2, 'MESS', 'Lunch', 'Rice, dal, sabzi, roti', 45.50, DATEADD('DAY', -MOD(X, 60), CURRENT_DATE)
+                FROM SYSTEM_RANGE(1, %d)
+            """.formatted(rows));
+        }
+        
+        query = conn.prepareStatement("""
+            SELECT r.*, u.name as student_name, c.name as contractor_name
+            FROM records r
+            JOIN users u ON r.student_id = u.id
+            JOIN users c ON r.contractor_id = c.id
+            ORDER BY r.record_date DESC, r.created_at DESC, r.id DESC
+        """);
+    }
+    
+    @TearDown
+    public void tearDown() throws Exception {
+        query.close();
+        conn.close();
+    }
+    
+    @Benchmark
+    public void extractRecord(Blackhole blackhole) throws Exception {
+        try (ResultSet rs = query.executeQuery()) {
+            while (rs.next()) {
+                blackhole.consume(recordDAO.extractRecord(rs));
+            }
+        }
+    }
+    
+    @Benchmark
+    public void iterateOnly(Blackhole blackhole) throws Exception {
+        try (ResultSet rs = query.executeQuery()) {
+            while (rs.next()) {
+                blackhole.consume(rs.getInt(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.mealscan.metrics;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// What the metrics filter and DAO timers add to every call, with several threads hammering the
+// same series the way concurrent requests to one endpoint do.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class MetricsRecordingBenchmark {
+    
+    @Benchmark
+    public void endpointRequest() {
+        Metrics.Endpoint endpoint = Metrics.endpoint("GET", "/api/records");
+        endpoint.started();
+        endpoint.finished(200, ThreadLocalRandom.current().nextLong(100_000, 50_000_000));
+    }
+    
+    @Benchmark
+    public void daoTimer() {
+        try (LatencyHistogram.Timer timer = Metrics.dao("RecordDAO.streamRecordsByStudentAndType").start()) {
+            // Nothing to time; the cost is the lookup, the clock reads and the record.
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mealscan.servlet;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// The bill total as StreamingRecordWriter keeps it, one BigDecimal.add per row, next to summing the
+// same costs as unscaled paise in a long for reference.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BillTotalBenchmark {
+    
+    // A month of meals, and a heavy year of canteen purchases.
+    @Param({"90", "1000"})
+    private int rows;
+    
+    private BigDecimal[] costs;
+    
+    @Setup
+    public void setUp() {
+        costs = new BigDecimal[rows];
+        for (int i = 0; i < rows; i++) {
+            costs[i] = BigDecimal.valueOf(ThreadLocalRandom.current().nextInt(1_000, 20_000), 2);
+        }
+    }
+    
+    @Benchmark
+    public BigDecimal bigDecimalAdd() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal cost : costs) {
+            total = total.add(cost);
+        }
+        return total;
+    }
+    
+    @Benchmark
+    public BigDecimal unscaledLongAdd() {
+        long paise = 0;
+        for (BigDecimal cost : costs) {
+            paise += cost.unscaledValue().longValue();
+        }
+        return BigDecimal.valueOf(paise, 2);
+    }
+}
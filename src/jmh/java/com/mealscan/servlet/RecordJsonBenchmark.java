@@ -0,0 +1,67 @@
+package com.mealscan.servlet;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mealscan.model.Record;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Serializing records through the shared mapper (JavaTimeModule registered): as one List, and row
+// by row through StreamingRecordWriter the way the listing and bill servlets write them. Output
+// is discarded so only encoding is measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordJsonBenchmark {
+    
+    @Param({"50", "1000"})
+    private int rows;
+    
+    private List<Record> records;
+    private ObjectWriter listWriter;
+    
+    @Setup
+    public void setUp() {
+        records = new ArrayList<>(rows);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < rows; i++) {
+            Record record = new Record(1, 2, Record.RecordType.MESS, "Lunch", "Rice, dal, sabzi, roti",
+                                       new BigDecimal("45.50"), today.minusDays(i % 60));
+            record.setId(i + 1);
+            record.setCreatedAt(LocalDateTime.now());
+            record.setStudentName("John Doe");
+            record.setContractorName("Mess Contractor");
+            records.add(record);
+        }
+        listWriter = Json.MAPPER.writerFor(new TypeReference<List<Record>>() {});
+    }
+    
+    @Benchmark
+    public void writeList() throws Exception {
+        listWriter.writeValue(OutputStream.nullOutputStream(), records);
+    }
+    
+    @Benchmark
+    public BigDecimal streamRows() throws Exception {
+        try (JsonGenerator generator = Json.MAPPER.createGenerator(OutputStream.nullOutputStream())) {
+            StreamingRecordWriter writer = new StreamingRecordWriter(generator);
+            generator.writeStartArray();
+            for (Record record : records) {
+                writer.handle(record);
+            }
+            generator.writeEndArray();
+            return writer.getTotal();
+        }
+    }
+}
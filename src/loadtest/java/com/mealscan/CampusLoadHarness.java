@@ -0,0 +1,491 @@
+package com.mealscan;
+
+import com.mealscan.auth.AuthExecutor;
+import com.mealscan.auth.PasswordHasher;
+import com.mealscan.config.DatabaseInitializer;
+import com.mealscan.config.ServerSettings;
+import com.mealscan.config.Settings;
+import com.mealscan.dao.BillLedgerDAO;
+import org.eclipse.jetty.server.Server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Reproduces a meal rush end to end: the full servlet stack in-process on an ephemeral port, a
+// synthetic campus seeded into its own H2 file, and many clients replaying a weighted mix of
+// logins, uploads, record listings, bills and stats, plus check-in scans when the mix names them
+// (scan=N). Settings are the usual mealscan.* ones.
+//
+// Clients are closed-loop (the next request leaves when the previous one returns), so once the
+// server saturates, queueing shows up as lower throughput rather than as the latency an open
+// stream of students would see. Compare runs at the same --clients, or add --think-ms.
+//
+// Seeding 5M records takes minutes; pass --db <dir> to keep the campus and reuse it next run.
+public class CampusLoadHarness {
+    
+    private static final String USAGE =
+        "Usage: CampusLoadHarness [--students <n>] [--contractors <n>] [--records <n>] [--db <dir>]\n" +
+        "                         [--clients <n>] [--warmup <s>] [--duration <s>] [--think-ms <ms>] [--seed <n>]\n" +
+        "                         [--mix login=2,upload=20,records=35,bills=30,stats=13]";
+    
+    private static final String PASSWORD = "password123";
+    private static final String EMAIL_DOMAIN = "@load.mealscan.test";
+    private static final int HISTORY_DAYS = 180;
+    private static final int SEED_CHUNK = 250_000;
+    private static final int LOGIN_ATTEMPTS = 20;
+    
+    private enum Op {
+        LOGIN,
+        UPLOAD,
+        SCAN,
+        RECORDS,
+        BILLS,
+        STATS
+    }
+    
+    // Seeded users have contiguous ids; the first half of the contractors run messes.
+    private record Campus(int firstStudentId, int students, int firstContractorId, int contractors) {
+        int messContractors() {
+            return (contractors + 1) / 2;
+        }
+    }
+    
+    private static final class Latencies {
+        private long[] nanos = new long[1024];
+        private int count;
+        private long errors;
+        
+        void add(long value) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = value;
+        }
+        
+        void addAll(Latencies other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.nanos[i]);
+            }
+            errors += other.errors;
+        }
+        
+        double percentileMillis(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100.0 * count) - 1;
+            return nanos[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+    
+    private record Response(int status, String cookie) {
+        boolean ok() {
+            return status >= 200 && status < 300;
+        }
+    }
+    
+    public static void main(String[] args) {
+        int students = 10_000;
+        int contractors = 20;
+        int records = 5_000_000;
+        String db = null;
+        int clients = 200;
+        int warmupSeconds = 10;
+        int durationSeconds = 60;
+        int thinkMillis = 0;
+        long seed = 42;
+        Map<Op, Integer> mix = parseMix("login=2,upload=20,records=35,bills=30,stats=13");
+        
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--students" -> students = Integer.parseInt(args[++i]);
+                    case "--contractors" -> contractors = Integer.parseInt(args[++i]);
+                    case "--records" -> records = Integer.parseInt(args[++i]);
+                    case "--db" -> db = args[++i];
+                    case "--clients" -> clients = Integer.parseInt(args[++i]);
+                    case "--warmup" -> warmupSeconds = Integer.parseInt(args[++i]);
+                    case "--duration" -> durationSeconds = Integer.parseInt(args[++i]);
+                    case "--think-ms" -> thinkMillis = Integer.parseInt(args[++i]);
+                    case "--seed" -> seed = Long.parseLong(args[++i]);
+                    case "--mix" -> mix = parseMix(args[++i]);
+                    default -> throw new IllegalArgumentException(args[i]);
+                }
+            }
+            if (students < 1 || contractors < 1 || records < 0 || clients < 1) {
+                throw new IllegalArgumentException("Counts must be positive");
+            }
+        } catch (RuntimeException e) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        
+        try {
+            Path dir = db != null ? Paths.get(db) : Files.createTempDirectory("mealscan-load");
+            Files.createDirectories(dir);
+            System.setProperty("mealscan.db.url", "jdbc:h2:" + dir.toAbsolutePath().resolve("mealscan"));
+            System.out.println("Database in " + dir.toAbsolutePath());
+            
+            MealScanApplication.configure();
+            DatabaseInitializer.initialize(Settings.intValue("mealscan.db.poolSize", "MEALSCAN_DB_POOL_SIZE",
+                                                             DatabaseInitializer.DEFAULT_POOL_SIZE));
+            Campus campus = loadOrSeed(students, contractors, records);
+            
+            Server server = ServerBootstrap.createServer(ServerSettings.load().withPort(0));
+            server.start();
+            String base = "http://localhost:" + ServerBootstrap.localPort(server);
+            Map<Op, Latencies> results = run(base, campus, mix, clients, warmupSeconds, durationSeconds, thinkMillis, seed);
+            server.stop();
+            
+            report(results, durationSeconds);
+            AuthExecutor.shutdown();
+            DatabaseInitializer.shutdown();
+            if (db == null) {
+                deleteRecursively(dir);
+            }
+            System.exit(0);
+            
+        } catch (Exception e) {
+            System.err.println("Load test failed");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+    
+    private static Map<Op, Integer> parseMix(String spec) {
+        Map<Op, Integer> mix = new EnumMap<>(Op.class);
+        for (String part : spec.split(",")) {
+            String[] pair = part.split("=");
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for " + pair[0]);
+            }
+            mix.put(Op.valueOf(pair[0].trim().toUpperCase()), weight);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("Mix has no weight");
+        }
+        return mix;
+    }
+    
+    private static Campus loadOrSeed(int students, int contractors, int records) throws Exception {
+        try (Connection conn = DatabaseInitializer.getDataSource().getConnection()) {
+            Campus existing = findCampus(conn);
+            if (existing != null) {
+                System.out.println("Reusing seeded campus: " + existing.students() + " students, " +
+                                   existing.contractors() + " contractors");
+                seedMenus(conn);
+                return existing;
+            }
+            
+            long start = System.nanoTime();
+            // One hash for everyone; hashing 10k passwords at the production cost would take minutes.
+            String hash = PasswordHasher.hash(PASSWORD);
+            try (PreparedStatement pstmt = conn.prepareStatement("""
+                INSERT INTO users (email, password, name, role)
+                SELECT 'student' || X || ?, ?, 'Student ' || X, 'STUDENT' FROM SYSTEM_RANGE(0, ?)
+            """)) {
+                pstmt.setString(1, EMAIL_DOMAIN);
+                pstmt.setString(2, hash);
+                pstmt.setInt(3, students - 1);
+                pstmt.executeUpdate();
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("""
+                INSERT INTO users (email, password, name, role)
+                SELECT 'contractor' || X || ?, ?, 'Contractor ' || X,
+                       CASE WHEN X < ? THEN 'MESS_CONTRACTOR' ELSE 'CANTEEN_CONTRACTOR' END
+                FROM SYSTEM_RANGE(0, ?)
+            """)) {
+                pstmt.setString(1, EMAIL_DOMAIN);
+                pstmt.setString(2, hash);
+                pstmt.setInt(3, (contractors + 1) / 2);
+                pstmt.setInt(4, contractors - 1);
+                pstmt.executeUpdate();
+            }
+            Campus campus = findCampus(conn);
+            
+            // Generated in the database from the row number: students spread by a large prime stride,
+            // contractors round-robin, dates over the last HISTORY_DAYS days.
+            try (PreparedStatement pstmt = conn.prepareStatement("""
+                INSERT INTO records (student_id, contractor_id, type, meal_type, items, cost, record_date)
+                SELECT ? + MOD(X * 7919, ?), ? + MOD(X, ?), CASE WHEN MOD(X, ?) < ? THEN 'MESS' ELSE 'CANTEEN' END,
+                       CASE MOD(X, 3) WHEN 0 THEN 'Breakfast' WHEN 1 THEN 'Lunch' ELSE 'Dinner' END,
+                       'Synthetic meal', CAST(20 + MOD(X * 37, 180) AS DECIMAL(10, 2)),
+                       DATEADD('DAY', -MOD(X * 13, ?), CURRENT_DATE)
+                FROM SYSTEM_RANGE(?, ?)
+            """)) {
+                pstmt.setInt(1, campus.firstStudentId());
+                pstmt.setInt(2, campus.students());
+                pstmt.setInt(3, campus.firstContractorId());
+                pstmt.setInt(4, campus.contractors());
+                pstmt.setInt(5, campus.contractors());
+                pstmt.setInt(6, campus.messContractors());
+                pstmt.setInt(7, HISTORY_DAYS);
+                for (long from = 0; from < records; from += SEED_CHUNK) {
+                    pstmt.setLong(8, from);
+                    pstmt.setLong(9, Math.min(records, from + SEED_CHUNK) - 1);
+                    pstmt.executeUpdate();
+                    System.out.println("Seeded " + Math.min(records, from + SEED_CHUNK) + " / " + records + " records");
+                }
+            }
+            new BillLedgerDAO().rebuild();
+            seedMenus(conn);
+            System.out.printf("Seeded %d students, %d contractors and %d records in %.1fs%n", students, contractors,
+                              records, (System.nanoTime() - start) / 1e9);
+            return campus;
+        }
+    }
+    
+    // Two slots that cover the whole day, so scans always find one being served.
+    private static void seedMenus(Connection conn) throws Exception {
+        try (PreparedStatement pstmt = conn.prepareStatement("""
+            INSERT INTO menu_slots (contractor_id, meal_type, items, cost, starts_at, ends_at)
+            SELECT u.id, s.meal_type, 'Load test meal', s.cost, s.starts_at, s.ends_at
+            FROM users u CROSS JOIN (VALUES ('Day', 60, TIME '06:00:00', TIME '18:00:00'),
+                                            ('Night', 40, TIME '18:00:00', TIME '06:00:00'))
+                                    AS s(meal_type, cost, starts_at, ends_at)
+            WHERE u.email LIKE ? AND NOT EXISTS (SELECT 1 FROM menu_slots m WHERE m.contractor_id = u.id)
+        """)) {
+            pstmt.setString(1, "contractor%" + EMAIL_DOMAIN);
+            pstmt.executeUpdate();
+        }
+    }
+    
+    private static Campus findCampus(Connection conn) throws Exception {
+        int[] students = idRange(conn, "student%" + EMAIL_DOMAIN);
+        int[] contractors = idRange(conn, "contractor%" + EMAIL_DOMAIN);
+        if (students == null || contractors == null) {
+            return null;
+        }
+        return new Campus(students[0], students[1], contractors[0], contractors[1]);
+    }
+    
+    private static int[] idRange(Connection conn, String emailPattern) throws Exception {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                 "SELECT MIN(id), MAX(id), COUNT(*) FROM users WHERE email LIKE ?")) {
+            pstmt.setString(1, emailPattern);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                int count = rs.getInt(3);
+                if (count == 0) {
+                    return null;
+                }
+                if (rs.getInt(2) - rs.getInt(1) + 1 != count) {
+                    throw new IllegalStateException("Seeded user ids for " + emailPattern + " are not contiguous");
+                }
+                return new int[]{rs.getInt(1), count};
+            }
+        }
+    }
+    
+    private static Map<Op, Latencies> run(String base, Campus campus, Map<Op, Integer> mix, int clients,
+                                          int warmupSeconds, int durationSeconds, int thinkMillis,
+                                          long seed) throws Exception {
+        HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        Op[] ops = mix.keySet().toArray(new Op[0]);
+        int[] cumulative = new int[ops.length];
+        for (int i = 0, sum = 0; i < ops.length; i++) {
+            sum += mix.get(ops[i]);
+            cumulative[i] = sum;
+        }
+        
+        System.out.println("Logging in " + clients + " clients");
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<Map<Op, Latencies>>> workers = new ArrayList<>();
+        long[] window = new long[2];
+        Object started = new Object();
+        for (int c = 0; c < clients; c++) {
+            SplittableRandom random = new SplittableRandom(seed + c);
+            workers.add(pool.submit(() -> {
+                int student = random.nextInt(campus.students());
+                int contractor = random.nextInt(campus.contractors());
+                String studentCookie = loginWithRetry(http, base, "student" + student + EMAIL_DOMAIN);
+                String contractorCookie = loginWithRetry(http, base, "contractor" + contractor + EMAIL_DOMAIN);
+                synchronized (started) {
+                    if (window[0] == 0) {
+                        window[0] = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+                        window[1] = window[0] + durationSeconds * 1_000_000_000L;
+                        System.out.println("Running " + clients + " clients for " + warmupSeconds + "s warm-up + " +
+                                           durationSeconds + "s");
+                    }
+                }
+                
+                Map<Op, Latencies> latencies = new EnumMap<>(Op.class);
+                for (Op op : ops) {
+                    latencies.put(op, new Latencies());
+                }
+                long now;
+                while ((now = System.nanoTime()) < window[1]) {
+                    int roll = random.nextInt(cumulative[cumulative.length - 1]);
+                    Op op = ops[0];
+                    for (int i = 0; roll >= cumulative[i]; i++) {
+                        op = ops[i + 1];
+                    }
+                    
+                    Response response;
+                    try {
+                        response = switch (op) {
+                            case LOGIN -> login(http, base, "student" + student + EMAIL_DOMAIN);
+                            case UPLOAD -> upload(http, base, contractorCookie, campus, random);
+                            case SCAN -> scan(http, base, contractorCookie, campus, random);
+                            case RECORDS -> get(http, base + "/api/records?type=" + randomType(campus, random) +
+                                                      "&limit=50", studentCookie);
+                            case BILLS -> {
+                                YearMonth month = YearMonth.now().minusMonths(random.nextInt(HISTORY_DAYS / 30));
+                                yield get(http, base + "/api/bills?type=" + randomType(campus, random) + "&year=" +
+                                                month.getYear() + "&month=" + month.getMonthValue(), studentCookie);
+                            }
+                            case STATS -> get(http, base + "/api/stats", contractorCookie);
+                        };
+                    } catch (IOException e) {
+                        response = new Response(0, null);
+                    }
+                    if (op == Op.LOGIN && response.ok()) {
+                        studentCookie = response.cookie();
+                    }
+                    
+                    if (now >= window[0]) {
+                        Latencies latency = latencies.get(op);
+                        if (response.ok()) {
+                            latency.add(System.nanoTime() - now);
+                        } else {
+                            latency.errors++;
+                        }
+                    }
+                    if (thinkMillis > 0) {
+                        Thread.sleep(thinkMillis);
+                    }
+                }
+                return latencies;
+            }));
+        }
+        
+        Map<Op, Latencies> merged = new EnumMap<>(Op.class);
+        for (Op op : ops) {
+            merged.put(op, new Latencies());
+        }
+        for (Future<Map<Op, Latencies>> worker : workers) {
+            worker.get().forEach((op, latencies) -> merged.get(op).addAll(latencies));
+        }
+        pool.shutdown();
+        merged.values().forEach(latencies -> Arrays.sort(latencies.nanos, 0, latencies.count));
+        return merged;
+    }
+    
+    // Logins past the auth queue get 503; at start-up every client logs in at once, so back off.
+    private static String loginWithRetry(HttpClient http, String base, String email) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            Response response = login(http, base, email);
+            if (response.ok()) {
+                return response.cookie();
+            }
+            if (attempt == LOGIN_ATTEMPTS) {
+                throw new IllegalStateException("Login for " + email + " failed with " + response.status());
+            }
+            Thread.sleep(100L * attempt);
+        }
+    }
+    
+    private static Response login(HttpClient http, String base, String email) throws Exception {
+        HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create(base + "/api/login"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"" + email + "\",\"password\":\"" + PASSWORD + "\"}"))
+            .build(), HttpResponse.BodyHandlers.discarding());
+        // Session id or signed token, whichever the auth mode sets; replayed as a Cookie header.
+        String cookie = response.headers().allValues("Set-Cookie").stream()
+            .map(header -> header.split(";", 2)[0])
+            .collect(Collectors.joining("; "));
+        return new Response(response.statusCode(), cookie);
+    }
+    
+    private static Response upload(HttpClient http, String base, String cookie, Campus campus,
+                                   SplittableRandom random) throws Exception {
+        String body = "{\"studentId\":" + (campus.firstStudentId() + random.nextInt(campus.students())) +
+                      ",\"mealType\":\"Lunch\",\"items\":\"Load test meal\",\"cost\":" + (20 + random.nextInt(180)) +
+                      ",\"recordDate\":\"" + LocalDate.now() + "\"}";
+        HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create(base + "/api/records/upload"))
+            .header("Content-Type", "application/json")
+            .header("Cookie", cookie)
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build(), HttpResponse.BodyHandlers.discarding());
+        return new Response(response.statusCode(), null);
+    }
+    
+    private static Response scan(HttpClient http, String base, String cookie, Campus campus,
+                                 SplittableRandom random) throws Exception {
+        String body = "{\"studentId\":" + (campus.firstStudentId() + random.nextInt(campus.students())) + "}";
+        HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create(base + "/api/records/scan"))
+            .header("Content-Type", "application/json")
+            .header("Cookie", cookie)
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build(), HttpResponse.BodyHandlers.discarding());
+        return new Response(response.statusCode(), null);
+    }
+    
+    private static Response get(HttpClient http, String url, String cookie) throws Exception {
+        HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create(url))
+            .header("Cookie", cookie)
+            .GET()
+            .build(), HttpResponse.BodyHandlers.discarding());
+        return new Response(response.statusCode(), null);
+    }
+    
+    private static String randomType(Campus campus, SplittableRandom random) {
+        return campus.contractors() > 1 && random.nextBoolean() ? "CANTEEN" : "MESS";
+    }
+    
+    private static void report(Map<Op, Latencies> results, int durationSeconds) {
+        Latencies total = new Latencies();
+        System.out.println();
+        System.out.printf("%-8s %10s %8s %10s %9s %9s %9s %9s%n",
+                          "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<Op, Latencies> entry : results.entrySet()) {
+            print(entry.getKey().name().toLowerCase(), entry.getValue(), durationSeconds);
+            total.addAll(entry.getValue());
+        }
+        Arrays.sort(total.nanos, 0, total.count);
+        print("total", total, durationSeconds);
+    }
+    
+    private static void print(String name, Latencies latencies, int durationSeconds) {
+        System.out.printf("%-8s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n", name, latencies.count, latencies.errors,
+                          latencies.count / (double) durationSeconds, latencies.percentileMillis(50),
+                          latencies.percentileMillis(99), latencies.percentileMillis(99.9),
+                          latencies.percentileMillis(100));
+    }
+    
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
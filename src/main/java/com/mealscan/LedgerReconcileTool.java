@@ -0,0 +1,25 @@
+package com.mealscan;
+
+import com.mealscan.config.DatabaseInitializer;
+import com.mealscan.dao.BillLedgerDAO;
+
+public class LedgerReconcileTool {
+    
+    public static void main(String[] args) {
+        try {
+            DatabaseInitializer.initialize();
+            
+            long started = System.currentTimeMillis();
+            int drifted = new BillLedgerDAO().rebuild();
+            
+            System.out.println("Bill ledger rebuilt from records in " + (System.currentTimeMillis() - started) +
+                               " ms; " + drifted + " ledger rows had drifted");
+            DatabaseInitializer.shutdown();
+            
+        } catch (Exception e) {
+            System.err.println("Ledger reconciliation failed");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
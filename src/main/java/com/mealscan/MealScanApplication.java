@@ -1,42 +1,50 @@
 package com.mealscan;
 
+import com.mealscan.auth.AuthExecutor;
+import com.mealscan.auth.AuthFilter;
+import com.mealscan.auth.PasswordHasher;
+import com.mealscan.auth.TokenSigner;
 import com.mealscan.config.DatabaseInitializer;
-import com.mealscan.servlet.*;
+import com.mealscan.config.ServerSettings;
+import com.mealscan.config.Settings;
+import com.mealscan.dao.DuplicateScans;
+import com.mealscan.dao.MenuDAO;
+import com.mealscan.dao.RecordIngestQueue;
+import com.mealscan.dao.UploadKeys;
 import org.eclipse.jetty.server.Server;
-import org.eclipse.jetty.servlet.DefaultServlet;
-import org.eclipse.jetty.servlet.ServletContextHandler;
-import org.eclipse.jetty.servlet.ServletHolder;
-import org.eclipse.jetty.util.resource.Resource;
+
+import java.time.Duration;
+import java.time.LocalDate;
 
 public class MealScanApplication {
     
-    private static final int PORT = 9090;
-    
     public static void main(String[] args) {
         try {
+            configure();
+            
             System.out.println("Initializing database...");
-            DatabaseInitializer.initialize();
+            DatabaseInitializer.initialize(Settings.intValue("mealscan.db.poolSize", "MEALSCAN_DB_POOL_SIZE",
+                                                             DatabaseInitializer.DEFAULT_POOL_SIZE));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                AuthExecutor.shutdown();
+                DatabaseInitializer.shutdown();
+            }));
             System.out.println("Database initialized successfully!");
+            DuplicateScans.preload(LocalDate.now());
+            new MenuDAO().preload();
             
-            Server server = new Server(PORT);
-            ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
-            context.setContextPath("/");
-            context.setBaseResource(Resource.newClassPathResource("webapp"));
-            context.setWelcomeFiles(new String[]{"index.html"});
-            
-            registerServlets(context);
-            
-            ServletHolder defaultServlet = new ServletHolder("default", DefaultServlet.class);
-            defaultServlet.setInitParameter("dirAllowed", "false");
-            context.addServlet(defaultServlet, "/");
+            ServerSettings settings = ServerSettings.load();
+            Server server = ServerBootstrap.createServer(settings);
             
-            server.setHandler(context);
-            
-            System.out.println("Starting MealScan server on port " + PORT + "...");
+            System.out.println("Starting MealScan server on port " + settings.port() + "...");
             server.start();
+            int port = ServerBootstrap.localPort(server);
             System.out.println("===========================================");
             System.out.println("MealScan is running!");
-            System.out.println("Access the application at: http://localhost:" + PORT);
+            System.out.println("Access the application at: http://localhost:" + port);
+            System.out.println("HTTP threads: " + settings.minThreads() + "-" + settings.maxThreads() +
+                               ", queue " + settings.queueCapacity() +
+                               (ServerBootstrap.usesVirtualThreads(server) ? ", requests on virtual threads" : ""));
             System.out.println("===========================================");
             System.out.println("\nDefault Credentials:");
             System.out.println("Student: student@mealscan.com / password123");
@@ -53,19 +61,44 @@ public class MealScanApplication {
         }
     }
     
-    private static void registerServlets(ServletContextHandler context) {
-        context.addServlet(LoginServlet.class, "/api/login");
-        context.addServlet(RegisterServlet.class, "/api/register");
-        context.addServlet(LogoutServlet.class, "/api/logout");
-        context.addServlet(RecordServlet.class, "/api/records");
-        context.addServlet(UploadRecordServlet.class, "/api/records/upload");
-        context.addServlet(DeleteRecordServlet.class, "/api/records/delete");
-        context.addServlet(BillServlet.class, "/api/bills");
-        context.addServlet(UserServlet.class, "/api/users");
-        context.addServlet(DeleteUserServlet.class, "/api/users/delete");
-        context.addServlet(UpdateUserServlet.class, "/api/users/update");
-        context.addServlet(UserStatsServlet.class, "/api/stats");
-        
-        System.out.println("All servlets registered successfully");
+    // Everything the servlets depend on besides the database; CampusLoadHarness shares it.
+    static void configure() {
+        PasswordHasher.setCost(Settings.intValue("mealscan.bcrypt.cost", "MEALSCAN_BCRYPT_COST", PasswordHasher.DEFAULT_COST));
+        AuthExecutor.initialize(
+            Settings.intValue("mealscan.auth.threads", "MEALSCAN_AUTH_THREADS", AuthExecutor.DEFAULT_THREADS),
+            Settings.intValue("mealscan.auth.queue", "MEALSCAN_AUTH_QUEUE", AuthExecutor.DEFAULT_QUEUE_CAPACITY));
+        RecordIngestQueue.initialize(
+            Settings.intValue("mealscan.ingest.queue", "MEALSCAN_INGEST_QUEUE", RecordIngestQueue.DEFAULT_CAPACITY),
+            Settings.intValue("mealscan.ingest.maxBatch", "MEALSCAN_INGEST_MAX_BATCH", RecordIngestQueue.DEFAULT_MAX_BATCH));
+        UploadKeys.initialize(
+            Settings.intValue("mealscan.upload.idempotencyKeys", "MEALSCAN_UPLOAD_IDEMPOTENCY_KEYS", UploadKeys.DEFAULT_CAPACITY),
+            Duration.ofHours(Settings.intValue("mealscan.upload.idempotencyWindowHours", "MEALSCAN_UPLOAD_IDEMPOTENCY_WINDOW_HOURS",
+                                               (int) UploadKeys.DEFAULT_WINDOW.toHours())));
+        DuplicateScans.initialize(
+            DuplicateScans.Mode.parse(Settings.stringValue("mealscan.upload.duplicateScans", "MEALSCAN_UPLOAD_DUPLICATE_SCANS", "flag")),
+            Settings.intValue("mealscan.upload.duplicateScanExpected", "MEALSCAN_UPLOAD_DUPLICATE_SCAN_EXPECTED",
+                              DuplicateScans.DEFAULT_EXPECTED_PER_DAY));
+        configureAuth();
+    }
+    
+    private static void configureAuth() {
+        AuthFilter.Mode mode = AuthFilter.Mode.parse(Settings.stringValue("mealscan.auth.mode", "MEALSCAN_AUTH_MODE", "session"));
+        if (mode == AuthFilter.Mode.SESSION) {
+            AuthFilter.configureSessions();
+            return;
+        }
+        // Prefer the environment variable for keys; system properties show up in process listings.
+        String keys = Settings.stringValue("mealscan.auth.tokenKeys", "MEALSCAN_AUTH_TOKEN_KEYS", null);
+        if (keys == null) {
+            throw new IllegalArgumentException("Token auth mode needs MEALSCAN_AUTH_TOKEN_KEYS (kid:base64key,...)");
+        }
+        int ttlSeconds = Settings.intValue("mealscan.auth.tokenTtlSeconds", "MEALSCAN_AUTH_TOKEN_TTL_SECONDS",
+                                           (int) AuthFilter.DEFAULT_TTL.toSeconds());
+        // Only turn this off for plain-http development; browsers then send the cookie over any connection.
+        boolean secureCookie = !"false".equalsIgnoreCase(
+            Settings.stringValue("mealscan.auth.secureCookie", "MEALSCAN_AUTH_SECURE_COOKIE", "true"));
+        AuthFilter.configureTokens(TokenSigner.parse(keys), Duration.ofSeconds(ttlSeconds), secureCookie);
+        System.out.println("Signed-token authentication enabled, tokens valid for " + ttlSeconds + "s" +
+                           (secureCookie ? "" : ", cookie not marked Secure"));
     }
 }
\ No newline at end of file
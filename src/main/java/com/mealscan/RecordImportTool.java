@@ -0,0 +1,107 @@
+package com.mealscan;
+
+import com.mealscan.config.DatabaseInitializer;
+import com.mealscan.dao.UserDAO;
+import com.mealscan.importer.ImportFormat;
+import com.mealscan.importer.RecordImporter;
+import com.mealscan.model.ImportJob;
+import com.mealscan.model.RecordValidator;
+import com.mealscan.model.User;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class RecordImportTool {
+    
+    private static final String USAGE =
+        "Usage: RecordImportTool --contractor <email> [--format csv|ndjson] [--job <id>] <file>";
+    
+    public static void main(String[] args) {
+        String contractorEmail = null;
+        String format = null;
+        Integer jobId = null;
+        Path file = null;
+        
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--contractor" -> contractorEmail = args[++i];
+                    case "--format" -> format = args[++i];
+                    case "--job" -> jobId = Integer.parseInt(args[++i]);
+                    default -> file = Path.of(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            file = null;
+        }
+        
+        if (contractorEmail == null || file == null) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        
+        try {
+            DatabaseInitializer.initialize();
+            
+            User contractor = new UserDAO().findByEmail(contractorEmail);
+            if (contractor == null || contractor.getRole() == User.UserRole.STUDENT) {
+                System.err.println("No contractor account with email " + contractorEmail);
+                System.exit(2);
+            }
+            
+            RecordImporter importer = new RecordImporter();
+            ImportJob job;
+            if (jobId != null) {
+                job = importer.findJob(jobId);
+                if (job == null || job.getContractorId() != contractor.getId()) {
+                    System.err.println("Import job " + jobId + " not found for " + contractorEmail);
+                    System.exit(2);
+                }
+                try {
+                    job = importer.claimJob(jobId);
+                } catch (IllegalStateException e) {
+                    System.err.println(e.getMessage());
+                    System.exit(2);
+                    return;
+                }
+                System.out.println("Resuming import " + job.getId() + " after row " + job.getRowsCommitted());
+            } else {
+                ImportFormat importFormat = format != null ? ImportFormat.parse(format)
+                    : ImportFormat.parse(file.toString().endsWith(".ndjson") ? "ndjson" : "csv");
+                job = importer.startJob(contractor.getId(), file.getFileName().toString(), importFormat);
+                System.out.println("Started import " + job.getId() + " from " + file);
+            }
+            
+            long started = System.nanoTime();
+            long resumedFrom = job.getRowsCommitted();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                importer.run(job, reader, RecordValidator.typeForRole(contractor.getRole().name()),
+                    new RecordImporter.ProgressListener() {
+                        @Override
+                        public void onRejected(long row, String error) {
+                            System.err.println("Row " + row + " rejected: " + error);
+                        }
+                        
+                        @Override
+                        public void onChunkCommitted(ImportJob progress) {
+                            long seconds = Math.max(1, (System.nanoTime() - started) / 1_000_000_000L);
+                            System.out.println(progress.getRowsCommitted() + " rows committed (" +
+                                               progress.getRecordsImported() + " imported, " +
+                                               progress.getRowsRejected() + " rejected, ~" +
+                                               (progress.getRowsCommitted() - resumedFrom) / seconds + " rows/s)");
+                        }
+                    });
+            }
+            
+            System.out.println("Import " + job.getId() + " completed: " + job);
+            DatabaseInitializer.shutdown();
+            
+        } catch (Exception e) {
+            System.err.println("Import failed; rerun with --job <id> and the same file to resume");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.mealscan;
+
+import com.mealscan.auth.AuthFilter;
+import com.mealscan.config.ServerSettings;
+import com.mealscan.metrics.MetricsFilter;
+import com.mealscan.servlet.*;
+import jakarta.servlet.DispatcherType;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import java.util.EnumSet;
+import java.util.concurrent.Executor;
+
+public final class ServerBootstrap {
+    
+    private ServerBootstrap() {}
+    
+    public static Server createServer(ServerSettings settings) {
+        // Fixed-capacity queue: once every thread is busy and the queue is full, Jetty rejects new work
+        // instead of buffering an unbounded backlog of requests that will all block on JDBC anyway.
+        QueuedThreadPool threadPool = new QueuedThreadPool(settings.maxThreads(), settings.minThreads(),
+            settings.idleTimeoutMillis(), new BlockingArrayQueue<>(settings.queueCapacity()));
+        threadPool.setName("http");
+        
+        if (settings.threadMode() == ServerSettings.ThreadMode.VIRTUAL) {
+            Executor virtualThreads = virtualThreadsExecutor();
+            if (virtualThreads != null) {
+                // Selectors and acceptors stay on the platform pool; servlet dispatch moves to virtual threads.
+                threadPool.setVirtualThreadsExecutor(virtualThreads);
+            } else {
+                System.err.println("Virtual threads need Java 21 or newer (running " + Runtime.version().feature() +
+                                   "), serving requests on platform threads");
+            }
+        }
+        
+        Server server = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(server, settings.acceptors(), settings.selectors(),
+                                                        new HttpConnectionFactory());
+        connector.setPort(settings.port());
+        connector.setIdleTimeout(settings.idleTimeoutMillis());
+        connector.setAcceptQueueSize(settings.acceptQueueSize());
+        server.addConnector(connector);
+        
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/");
+        Resource webapp = Resource.newClassPathResource("webapp");
+        context.setBaseResource(webapp);
+        
+        context.addFilter(MetricsFilter.class, "/*", EnumSet.of(DispatcherType.REQUEST)).setAsyncSupported(true);
+        context.addFilter(AuthFilter.class, "/*", EnumSet.of(DispatcherType.REQUEST)).setAsyncSupported(true);
+        registerServlets(context);
+        
+        context.addServlet(new ServletHolder("default", new StaticAssetServlet(webapp)), "/");
+        
+        if (settings.gzipMinBytes() < 0) {
+            server.setHandler(context);
+        } else {
+            // Static pages arrive precompressed from StaticAssetServlet; this only covers the API.
+            GzipHandler gzip = new GzipHandler();
+            gzip.setIncludedPaths("/api/*");
+            gzip.setIncludedMimeTypes("application/json");
+            gzip.setMinGzipSize(settings.gzipMinBytes());
+            gzip.setHandler(context);
+            server.setHandler(gzip);
+        }
+        return server;
+    }
+    
+    public static int localPort(Server server) {
+        return ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    }
+    
+    public static boolean usesVirtualThreads(Server server) {
+        return VirtualThreads.isUseVirtualThreads(server.getThreadPool());
+    }
+    
+    private static Executor virtualThreadsExecutor() {
+        if (Runtime.version().feature() < 21) {
+            return null;
+        }
+        return VirtualThreads.getDefaultVirtualThreadsExecutor();
+    }
+    
+    private static void registerServlets(ServletContextHandler context) {
+        context.addServlet(LoginServlet.class, "/api/login").setAsyncSupported(true);
+        context.addServlet(RegisterServlet.class, "/api/register");
+        context.addServlet(LogoutServlet.class, "/api/logout");
+        context.addServlet(RecordServlet.class, "/api/records");
+        context.addServlet(UploadRecordServlet.class, "/api/records/upload").setAsyncSupported(true);
+        context.addServlet(BatchUploadRecordServlet.class, "/api/records/upload/batch");
+        context.addServlet(ImportRecordServlet.class, "/api/records/import");
+        context.addServlet(DeleteRecordServlet.class, "/api/records/delete");
+        context.addServlet(RecordChangesServlet.class, "/api/records/changes");
+        context.addServlet(ScanServlet.class, "/api/records/scan").setAsyncSupported(true);
+        context.addServlet(MenuServlet.class, "/api/menu");
+        context.addServlet(BillServlet.class, "/api/bills");
+        context.addServlet(UserServlet.class, "/api/users");
+        context.addServlet(DeleteUserServlet.class, "/api/users/delete");
+        context.addServlet(UpdateUserServlet.class, "/api/users/update");
+        context.addServlet(UserStatsServlet.class, "/api/stats");
+        context.addServlet(MetricsServlet.class, "/api/metrics");
+        context.addServlet(LiveEventServlet.class, "/api/events").setAsyncSupported(true);
+        
+        System.out.println("All servlets registered successfully");
+    }
+}
@@ -0,0 +1,76 @@
+package com.mealscan.auth;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// BCrypt is deliberately CPU-bound, so password checks run on their own small pool instead of
+// Jetty's request threads. When a login rush fills the queue, submit() rejects and the caller
+// answers 503 rather than letting hashing starve every other endpoint.
+public final class AuthExecutor {
+    
+    public static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    public static final int DEFAULT_QUEUE_CAPACITY = 200;
+    
+    private static volatile ThreadPoolExecutor executor;
+    private static final LongAdder rejected = new LongAdder();
+    
+    private AuthExecutor() {}
+    
+    public static synchronized void initialize(int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor next = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), task -> {
+                Thread thread = new Thread(task, "auth-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        
+        ThreadPoolExecutor previous = executor;
+        executor = next;
+        if (previous != null) {
+            previous.shutdown();
+        }
+        System.out.println("Auth executor started with " + threads + " threads, queue " + queueCapacity);
+    }
+    
+    public static void submit(Runnable task) throws RejectedExecutionException {
+        try {
+            get().execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+    
+    public static int getQueueDepth() {
+        return get().getQueue().size();
+    }
+    
+    public static long getRejectedCount() {
+        return rejected.sum();
+    }
+    
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+    
+    private static ThreadPoolExecutor get() {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            synchronized (AuthExecutor.class) {
+                if (executor == null) {
+                    initialize(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+                }
+                current = executor;
+            }
+        }
+        return current;
+    }
+}
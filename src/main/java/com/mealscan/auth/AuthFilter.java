@@ -0,0 +1,139 @@
+package com.mealscan.auth;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+
+// Resolves the caller once per request and exposes it as UserPrincipal.from(req). Servlets still
+// decide what an anonymous caller may do. In TOKEN mode nothing is kept server-side, so any node
+// can serve any request; SESSION mode keeps the original Jetty in-memory session behaviour.
+public class AuthFilter extends HttpFilter {
+    
+    public enum Mode {
+        SESSION,
+        TOKEN;
+        
+        public static Mode parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown auth mode '" + value + "', expected session or token");
+            }
+        }
+    }
+    
+    public static final String COOKIE_NAME = "mealscan_token";
+    public static final Duration DEFAULT_TTL = Duration.ofHours(1);
+    private static final String BEARER_PREFIX = "Bearer ";
+    
+    private static volatile Mode mode = Mode.SESSION;
+    private static volatile TokenSigner signer;
+    private static volatile Duration ttl = DEFAULT_TTL;
+    private static volatile boolean secureCookie = true;
+    
+    public static void configureSessions() {
+        mode = Mode.SESSION;
+        signer = null;
+    }
+    
+    public static void configureTokens(TokenSigner tokenSigner, Duration tokenTtl, boolean secure) {
+        signer = tokenSigner;
+        ttl = tokenTtl;
+        secureCookie = secure;
+        mode = Mode.TOKEN;
+    }
+    
+    public static Mode getMode() {
+        return mode;
+    }
+    
+    // Called on a successful login. Returns the token in TOKEN mode so API clients can send it as a
+    // bearer header; browsers use the cookie.
+    public static String signIn(HttpServletRequest req, HttpServletResponse resp, UserPrincipal principal) {
+        if (mode == Mode.TOKEN) {
+            String token = signer.issue(principal, Instant.now().plus(ttl));
+            setCookie(resp, token, ttl.toSeconds());
+            return token;
+        }
+        HttpSession session = req.getSession(true);
+        session.setAttribute("userId", principal.userId());
+        session.setAttribute("userRole", principal.role());
+        session.setAttribute("userName", principal.name());
+        session.setMaxInactiveInterval((int) DEFAULT_TTL.toSeconds());
+        return null;
+    }
+    
+    // A token cannot be revoked before it expires; logging out only drops the browser's copy.
+    public static void signOut(HttpServletRequest req, HttpServletResponse resp) {
+        HttpSession session = req.getSession(false);
+        if (session != null) {
+            session.invalidate();
+        }
+        if (mode == Mode.TOKEN) {
+            setCookie(resp, "", 0);
+        }
+    }
+    
+    @Override
+    protected void doFilter(HttpServletRequest req, HttpServletResponse resp, FilterChain chain)
+            throws IOException, ServletException {
+        UserPrincipal principal = mode == Mode.TOKEN ? fromToken(req, resp) : fromSession(req);
+        if (principal != null) {
+            req.setAttribute(UserPrincipal.ATTRIBUTE, principal);
+        }
+        chain.doFilter(req, resp);
+    }
+    
+    private static UserPrincipal fromSession(HttpServletRequest req) {
+        HttpSession session = req.getSession(false);
+        if (session == null || session.getAttribute("userId") == null) {
+            return null;
+        }
+        return new UserPrincipal((int) session.getAttribute("userId"), (String) session.getAttribute("userRole"),
+                                 (String) session.getAttribute("userName"));
+    }
+    
+    private static UserPrincipal fromToken(HttpServletRequest req, HttpServletResponse resp) {
+        String header = req.getHeader("Authorization");
+        boolean fromCookie = false;
+        String token = null;
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            token = header.substring(BEARER_PREFIX.length()).trim();
+        } else if (req.getCookies() != null) {
+            for (Cookie cookie : req.getCookies()) {
+                if (COOKIE_NAME.equals(cookie.getName())) {
+                    token = cookie.getValue();
+                    fromCookie = true;
+                }
+            }
+        }
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        
+        Instant now = Instant.now();
+        TokenSigner.Verified verified = signer.verify(token, now);
+        if (verified == null) {
+            return null;
+        }
+        // Sliding expiry for browsers, matching the session's inactivity timeout: past half its
+        // lifetime, the cookie is re-issued (signed with the current key, which also rotates it).
+        if (fromCookie && Duration.between(now, verified.expiresAt()).compareTo(ttl.dividedBy(2)) < 0) {
+            setCookie(resp, signer.issue(verified.principal(), now.plus(ttl)), ttl.toSeconds());
+        }
+        return verified.principal();
+    }
+    
+    private static void setCookie(HttpServletResponse resp, String value, long maxAgeSeconds) {
+        resp.addHeader("Set-Cookie", COOKIE_NAME + "=" + value + "; Path=/; Max-Age=" + maxAgeSeconds +
+                                     "; HttpOnly; SameSite=Lax" + (secureCookie ? "; Secure" : ""));
+    }
+}
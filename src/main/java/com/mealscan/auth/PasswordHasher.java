@@ -0,0 +1,45 @@
+package com.mealscan.auth;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+public final class PasswordHasher {
+    
+    public static final int DEFAULT_COST = 10;
+    private static final int MIN_COST = 4;
+    private static final int MAX_COST = 31;
+    
+    private static volatile int cost = DEFAULT_COST;
+    
+    private PasswordHasher() {}
+    
+    public static void setCost(int newCost) {
+        if (newCost < MIN_COST || newCost > MAX_COST) {
+            throw new IllegalArgumentException("BCrypt cost must be between " + MIN_COST + " and " + MAX_COST);
+        }
+        cost = newCost;
+    }
+    
+    public static int getCost() {
+        return cost;
+    }
+    
+    public static String hash(String password) {
+        return BCrypt.hashpw(password, BCrypt.gensalt(cost));
+    }
+    
+    public static boolean verify(String password, String hash) {
+        return hash != null && BCrypt.checkpw(password, hash);
+    }
+    
+    // Hashes look like $2a$10$<salt+digest>; the two digits after the version are the cost.
+    public static boolean needsRehash(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(6) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6)) != cost;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.mealscan.auth;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Compact HMAC-SHA256 tokens: <keyId>.<payload>.<signature>, each part base64url without padding.
+// The payload is "userId:role:expiresAtEpochSecond:name". The first configured key signs, and every
+// configured key verifies. To rotate keys, put a new key first and keep the old one until the
+// longest-lived token it signed has expired.
+public final class TokenSigner {
+    
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    
+    public record Verified(UserPrincipal principal, Instant expiresAt) {}
+    
+    private final String signingKeyId;
+    private final Map<String, ThreadLocal<Mac>> macs = new LinkedHashMap<>();
+    
+    public TokenSigner(Map<String, byte[]> keys) {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("At least one token key is required");
+        }
+        for (Map.Entry<String, byte[]> key : keys.entrySet()) {
+            if (key.getKey().isEmpty() || key.getKey().contains(".")) {
+                throw new IllegalArgumentException("Token key id must be non-empty and contain no '.'");
+            }
+            if (key.getValue().length < MIN_KEY_BYTES) {
+                throw new IllegalArgumentException("Token key " + key.getKey() + " must be at least " + MIN_KEY_BYTES + " bytes");
+            }
+            SecretKeySpec spec = new SecretKeySpec(key.getValue(), ALGORITHM);
+            // Mac instances are stateful; one per thread avoids both locking and per-request getInstance().
+            macs.put(key.getKey(), ThreadLocal.withInitial(() -> {
+                try {
+                    Mac mac = Mac.getInstance(ALGORITHM);
+                    mac.init(spec);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        this.signingKeyId = keys.keySet().iterator().next();
+    }
+    
+    // Parses "kid:base64key,kid:base64key", signing key first.
+    public static TokenSigner parse(String config) {
+        Map<String, byte[]> keys = new LinkedHashMap<>();
+        for (String entry : config.split(",")) {
+            int colon = entry.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Token keys must look like kid:base64key[,kid:base64key...]");
+            }
+            keys.put(entry.substring(0, colon).trim(), Base64.getDecoder().decode(entry.substring(colon + 1).trim()));
+        }
+        return new TokenSigner(keys);
+    }
+    
+    public String issue(UserPrincipal principal, Instant expiresAt) {
+        String payload = principal.userId() + ":" + principal.role() + ":" + expiresAt.getEpochSecond() + ":" + principal.name();
+        String body = signingKeyId + "." + ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return body + "." + ENCODER.encodeToString(sign(signingKeyId, body));
+    }
+    
+    // Returns null for anything that is malformed, signed with an unknown key, tampered with or expired.
+    public Verified verify(String token, Instant now) {
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+        if (first <= 0 || last == first) {
+            return null;
+        }
+        String keyId = token.substring(0, first);
+        if (!macs.containsKey(keyId)) {
+            return null;
+        }
+        
+        try {
+            byte[] signature = DECODER.decode(token.substring(last + 1));
+            if (!MessageDigest.isEqual(signature, sign(keyId, token.substring(0, last)))) {
+                return null;
+            }
+            String[] fields = new String(DECODER.decode(token.substring(first + 1, last)), StandardCharsets.UTF_8)
+                .split(":", 4);
+            if (fields.length != 4) {
+                return null;
+            }
+            Instant expiresAt = Instant.ofEpochSecond(Long.parseLong(fields[2]));
+            if (!now.isBefore(expiresAt)) {
+                return null;
+            }
+            return new Verified(new UserPrincipal(Integer.parseInt(fields[0]), fields[1], fields[3]), expiresAt);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private byte[] sign(String keyId, String body) {
+        return macs.get(keyId).get().doFinal(body.getBytes(StandardCharsets.US_ASCII));
+    }
+}
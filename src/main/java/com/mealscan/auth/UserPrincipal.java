@@ -0,0 +1,13 @@
+package com.mealscan.auth;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+// The signed-in user as resolved by AuthFilter, from a token or the session depending on the mode.
+public record UserPrincipal(int userId, String role, String name) {
+    
+    static final String ATTRIBUTE = UserPrincipal.class.getName();
+    
+    public static UserPrincipal from(HttpServletRequest req) {
+        return (UserPrincipal) req.getAttribute(ATTRIBUTE);
+    }
+}
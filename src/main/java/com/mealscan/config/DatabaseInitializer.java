@@ -1,17 +1,34 @@
 package com.mealscan.config;
 
-import org.mindrot.jbcrypt.BCrypt;
+import com.mealscan.auth.PasswordHasher;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
 import java.sql.*;
+import java.time.LocalTime;
 
 public class DatabaseInitializer {
     
-    private static final String DB_URL = "jdbc:h2:./mealscan;AUTO_SERVER=TRUE";
+    private static final String DEFAULT_DB_URL = "jdbc:h2:./mealscan;AUTO_SERVER=TRUE";
     private static final String DB_USER = "sa";
     private static final String DB_PASSWORD = "";
     
+    public static final int DEFAULT_POOL_SIZE = 10;
+    
+    private static final PoolMetrics poolMetrics = new PoolMetrics();
+    private static volatile HikariDataSource dataSource;
+    
     public static void initialize() {
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD)) {
+        initialize(DEFAULT_POOL_SIZE);
+    }
+    
+    public static void initialize(int poolSize) {
+        configurePool(poolSize);
+        try (Connection conn = getConnection()) {
             createTables(conn);
+            SchemaMigrator.migrate(conn);
             insertDefaultData(conn);
         } catch (Exception e) {
             throw new RuntimeException("Failed to initialize database", e);
@@ -60,7 +77,7 @@ public class DatabaseInitializer {
             }
         }
         
-        String hashedPassword = BCrypt.hashpw("password123", BCrypt.gensalt());
+        String hashedPassword = PasswordHasher.hash("password123");
         String insertUser = "INSERT INTO users (email, password, name, role) VALUES (?, ?, ?, ?)";
         
         try (PreparedStatement pstmt = conn.prepareStatement(insertUser)) {
@@ -84,9 +101,85 @@ public class DatabaseInitializer {
             
             System.out.println("Default users created successfully");
         }
+        
+        String insertSlot = """
+            INSERT INTO menu_slots (contractor_id, meal_type, items, cost, starts_at, ends_at)
+            SELECT id, ?, ?, ?, ?, ? FROM users WHERE email = 'mess@mealscan.com'
+        """;
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSlot)) {
+            addDefaultSlot(pstmt, "Breakfast", "Idli, Sambar, Tea", "40.00", "07:00", "10:00");
+            addDefaultSlot(pstmt, "Lunch", "Rice, Dal, Sabzi, Roti", "60.00", "12:00", "15:00");
+            addDefaultSlot(pstmt, "Snacks", "Samosa, Tea", "20.00", "16:30", "18:00");
+            addDefaultSlot(pstmt, "Dinner", "Roti, Paneer, Rice", "60.00", "19:00", "22:00");
+            pstmt.executeBatch();
+            
+            System.out.println("Default menu created successfully");
+        }
+    }
+    
+    private static void addDefaultSlot(PreparedStatement pstmt, String mealType, String items, String cost,
+                                       String startsAt, String endsAt) throws SQLException {
+        pstmt.setString(1, mealType);
+        pstmt.setString(2, items);
+        pstmt.setBigDecimal(3, new BigDecimal(cost));
+        pstmt.setTime(4, Time.valueOf(LocalTime.parse(startsAt)));
+        pstmt.setTime(5, Time.valueOf(LocalTime.parse(endsAt)));
+        pstmt.addBatch();
+    }
+    
+    public static synchronized void configurePool(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("mealscan-pool");
+        config.setJdbcUrl(Settings.stringValue("mealscan.db.url", "MEALSCAN_DB_URL", DEFAULT_DB_URL));
+        config.setUsername(DB_USER);
+        config.setPassword(DB_PASSWORD);
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(Math.min(2, poolSize));
+        config.setConnectionTimeout(5_000);
+        config.setValidationTimeout(1_000);
+        config.setIdleTimeout(300_000);
+        config.setMaxLifetime(1_800_000);
+        config.setKeepaliveTime(120_000);
+        config.setMetricsTrackerFactory(poolMetrics);
+        
+        HikariDataSource previous = dataSource;
+        dataSource = new HikariDataSource(config);
+        if (previous != null) {
+            previous.close();
+        }
+        System.out.println("Connection pool started with max size " + poolSize);
+    }
+    
+    public static DataSource getDataSource() {
+        HikariDataSource current = dataSource;
+        if (current == null) {
+            synchronized (DatabaseInitializer.class) {
+                if (dataSource == null) {
+                    configurePool(DEFAULT_POOL_SIZE);
+                }
+                current = dataSource;
+            }
+        }
+        return current;
+    }
+    
+    public static PoolMetrics getPoolMetrics() {
+        return poolMetrics;
+    }
+    
+    public static synchronized void shutdown() {
+        if (dataSource != null) {
+            dataSource.close();
+            dataSource = null;
+        }
     }
     
     public static Connection getConnection() throws Exception {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        return getDataSource().getConnection();
     }
 }
\ No newline at end of file
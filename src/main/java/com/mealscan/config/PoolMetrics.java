@@ -0,0 +1,74 @@
+package com.mealscan.config;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class PoolMetrics implements MetricsTrackerFactory {
+    
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAccumulator maxAcquireNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder acquireTimeouts = new LongAdder();
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder usageMillis = new LongAdder();
+    private volatile PoolStats poolStats;
+    
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                connectionsCreated.increment();
+            }
+            
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquisitions.increment();
+                acquireNanos.add(elapsedAcquiredNanos);
+                maxAcquireNanos.accumulate(elapsedAcquiredNanos);
+            }
+            
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageMillis.add(elapsedBorrowedMillis);
+            }
+            
+            @Override
+            public void recordConnectionTimeout() {
+                acquireTimeouts.increment();
+            }
+        };
+    }
+    
+    public long getAcquireTimeouts() {
+        return acquireTimeouts.sum();
+    }
+    
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = acquisitions.sum();
+        stats.put("acquisitions", count);
+        stats.put("acquireTimeouts", acquireTimeouts.sum());
+        stats.put("avgAcquireMicros", count == 0 ? 0 : acquireNanos.sum() / count / 1_000);
+        stats.put("maxAcquireMicros", maxAcquireNanos.get() / 1_000);
+        stats.put("connectionsCreated", connectionsCreated.sum());
+        stats.put("avgUsageMillis", count == 0 ? 0 : usageMillis.sum() / count);
+        
+        PoolStats current = poolStats;
+        if (current != null) {
+            stats.put("totalConnections", current.getTotalConnections());
+            stats.put("activeConnections", current.getActiveConnections());
+            stats.put("idleConnections", current.getIdleConnections());
+            stats.put("pendingThreads", current.getPendingThreads());
+            stats.put("maxConnections", current.getMaxConnections());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,182 @@
+package com.mealscan.config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+public class SchemaMigrator {
+    
+    private record Migration(int version, String description, String... statements) {}
+    
+    // Append new migrations at the end; never edit one that has already shipped.
+    private static final List<Migration> MIGRATIONS = List.of(
+        new Migration(1, "Composite indexes for record listings and bills",
+            "CREATE INDEX IF NOT EXISTS idx_records_student_type_date ON records (student_id, type, record_date)",
+            "CREATE INDEX IF NOT EXISTS idx_records_contractor_date ON records (contractor_id, record_date, created_at)"),
+        new Migration(2, "Checkpoint table for resumable record imports",
+            """
+            CREATE TABLE IF NOT EXISTS import_jobs (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                contractor_id INT NOT NULL,
+                source VARCHAR(255) NOT NULL,
+                format VARCHAR(20) NOT NULL,
+                rows_committed BIGINT NOT NULL DEFAULT 0,
+                records_imported BIGINT NOT NULL DEFAULT 0,
+                rows_rejected BIGINT NOT NULL DEFAULT 0,
+                status VARCHAR(20) NOT NULL,
+                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                FOREIGN KEY (contractor_id) REFERENCES users(id) ON DELETE CASCADE
+            )
+            """),
+        new Migration(3, "Incrementally maintained monthly bill ledger",
+            """
+            CREATE TABLE IF NOT EXISTS monthly_bill_totals (
+                student_id INT NOT NULL,
+                type VARCHAR(20) NOT NULL,
+                bill_year INT NOT NULL,
+                bill_month INT NOT NULL,
+                total DECIMAL(14, 2) NOT NULL,
+                record_count INT NOT NULL,
+                PRIMARY KEY (student_id, type, bill_year, bill_month),
+                FOREIGN KEY (student_id) REFERENCES users(id) ON DELETE CASCADE
+            )
+            """,
+            """
+            INSERT INTO monthly_bill_totals (student_id, type, bill_year, bill_month, total, record_count)
+            SELECT student_id, type, YEAR(record_date), MONTH(record_date), SUM(cost), COUNT(*)
+            FROM records
+            GROUP BY student_id, type, YEAR(record_date), MONTH(record_date)
+            """),
+        new Migration(4, "Per-month bill versions for conditional GETs",
+            "ALTER TABLE monthly_bill_totals ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1"),
+        new Migration(5, "Change sequence and tombstones for delta sync",
+            "CREATE SEQUENCE IF NOT EXISTS record_change_seq",
+            "ALTER TABLE records ADD COLUMN IF NOT EXISTS change_seq BIGINT DEFAULT NEXT VALUE FOR record_change_seq NOT NULL",
+            "CREATE INDEX IF NOT EXISTS idx_records_contractor_change ON records (contractor_id, change_seq)",
+            "CREATE INDEX IF NOT EXISTS idx_records_student_change ON records (student_id, change_seq)",
+            """
+            CREATE TABLE IF NOT EXISTS record_tombstones (
+                record_id INT PRIMARY KEY,
+                student_id INT NOT NULL,
+                contractor_id INT NOT NULL,
+                type VARCHAR(20) NOT NULL,
+                change_seq BIGINT DEFAULT NEXT VALUE FOR record_change_seq NOT NULL,
+                deleted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            )
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_tombstones_contractor_change ON record_tombstones (contractor_id, change_seq)",
+            "CREATE INDEX IF NOT EXISTS idx_tombstones_student_change ON record_tombstones (student_id, change_seq)"),
+        new Migration(6, "Idempotency keys for record uploads",
+            """
+            CREATE TABLE IF NOT EXISTS upload_keys (
+                contractor_id INT NOT NULL,
+                idempotency_key VARCHAR(255) NOT NULL,
+                record_id INT NOT NULL,
+                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                PRIMARY KEY (contractor_id, idempotency_key),
+                FOREIGN KEY (contractor_id) REFERENCES users(id) ON DELETE CASCADE
+            )
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_upload_keys_created ON upload_keys (created_at)"),
+        new Migration(7, "Slot index for duplicate scan checks",
+            "CREATE INDEX IF NOT EXISTS idx_records_date_slot ON records (record_date, type, student_id, meal_type)"),
+        new Migration(8, "Contractor menu slots for check-in scans",
+            """
+            CREATE TABLE IF NOT EXISTS menu_slots (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                contractor_id INT NOT NULL,
+                meal_type VARCHAR(50) NOT NULL,
+                items TEXT NOT NULL,
+                cost DECIMAL(10, 2) NOT NULL,
+                starts_at TIME NOT NULL,
+                ends_at TIME NOT NULL,
+                FOREIGN KEY (contractor_id) REFERENCES users(id) ON DELETE CASCADE
+            )
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_menu_slots_contractor ON menu_slots (contractor_id, starts_at)"),
+        new Migration(9, "Monthly earnings ledger per contractor",
+            """
+            CREATE TABLE IF NOT EXISTS contractor_monthly_totals (
+                contractor_id INT NOT NULL,
+                bill_year INT NOT NULL,
+                bill_month INT NOT NULL,
+                total DECIMAL(14, 2) NOT NULL,
+                record_count INT NOT NULL,
+                PRIMARY KEY (contractor_id, bill_year, bill_month),
+                FOREIGN KEY (contractor_id) REFERENCES users(id) ON DELETE CASCADE
+            )
+            """,
+            """
+            INSERT INTO contractor_monthly_totals (contractor_id, bill_year, bill_month, total, record_count)
+            SELECT contractor_id, YEAR(record_date), MONTH(record_date), SUM(cost), COUNT(*)
+            FROM records
+            GROUP BY contractor_id, YEAR(record_date), MONTH(record_date)
+            """),
+        new Migration(10, "Newest-first contractor/date index",
+            "DROP INDEX IF EXISTS idx_records_contractor_date",
+            "CREATE INDEX idx_records_contractor_date ON records (contractor_id, record_date DESC, created_at DESC, id DESC)"),
+        new Migration(11, "Open change floors shared across processes",
+            """
+            CREATE TABLE IF NOT EXISTS open_change_floors (
+                floor BIGINT PRIMARY KEY,
+                opened_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+            )
+            """)
+    );
+    
+    public static void migrate(Connection conn) throws Exception {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS schema_version (
+                    version INT PRIMARY KEY,
+                    description VARCHAR(255) NOT NULL,
+                    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+        }
+        
+        int current = currentVersion(conn);
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() > current) {
+                apply(conn, migration);
+            }
+        }
+    }
+    
+    public static int currentVersion(Connection conn) throws Exception {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+    
+    private static void apply(Connection conn, Migration migration) throws Exception {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement pstmt = conn.prepareStatement(
+                 "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            
+            for (String sql : migration.statements()) {
+                stmt.execute(sql);
+            }
+            
+            pstmt.setInt(1, migration.version());
+            pstmt.setString(2, migration.description());
+            pstmt.executeUpdate();
+            
+            conn.commit();
+            System.out.println("Applied schema migration " + migration.version() + ": " + migration.description());
+            
+        } catch (Exception e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+}
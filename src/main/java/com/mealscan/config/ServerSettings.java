@@ -0,0 +1,56 @@
+package com.mealscan.config;
+
+public record ServerSettings(int port, int minThreads, int maxThreads, int idleTimeoutMillis, int acceptors,
+                             int selectors, int queueCapacity, int acceptQueueSize, int gzipMinBytes,
+                             ThreadMode threadMode) {
+
+    public enum ThreadMode {
+        PLATFORM,
+        VIRTUAL;
+
+        public static ThreadMode parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown thread mode '" + value + "', expected platform or virtual");
+            }
+        }
+    }
+
+    public static final int DEFAULT_PORT = 9090;
+
+    public ServerSettings {
+        if (minThreads < 1 || maxThreads < minThreads) {
+            throw new IllegalArgumentException("HTTP threads must satisfy 1 <= min <= max, got " + minThreads + ".." + maxThreads);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("HTTP request queue capacity must be positive");
+        }
+    }
+
+    // Acceptors and selectors of -1 let Jetty size them from the core count. API responses shorter than
+    // gzipMinBytes go out uncompressed, and -1 turns response compression off.
+    public static ServerSettings load() {
+        return new ServerSettings(
+            Settings.intValue("mealscan.port", "MEALSCAN_PORT", DEFAULT_PORT),
+            Settings.intValue("mealscan.http.minThreads", "MEALSCAN_HTTP_MIN_THREADS", 8),
+            Settings.intValue("mealscan.http.maxThreads", "MEALSCAN_HTTP_MAX_THREADS", 200),
+            Settings.intValue("mealscan.http.idleTimeoutMs", "MEALSCAN_HTTP_IDLE_TIMEOUT_MS", 60_000),
+            Settings.intValue("mealscan.http.acceptors", "MEALSCAN_HTTP_ACCEPTORS", -1),
+            Settings.intValue("mealscan.http.selectors", "MEALSCAN_HTTP_SELECTORS", -1),
+            Settings.intValue("mealscan.http.queueCapacity", "MEALSCAN_HTTP_QUEUE_CAPACITY", 1_000),
+            Settings.intValue("mealscan.http.acceptQueueSize", "MEALSCAN_HTTP_ACCEPT_QUEUE_SIZE", 0),
+            Settings.intValue("mealscan.http.gzipMinBytes", "MEALSCAN_HTTP_GZIP_MIN_BYTES", 1_024),
+            ThreadMode.parse(Settings.stringValue("mealscan.http.threadMode", "MEALSCAN_HTTP_THREAD_MODE", "platform")));
+    }
+
+    public ServerSettings withPort(int newPort) {
+        return new ServerSettings(newPort, minThreads, maxThreads, idleTimeoutMillis, acceptors, selectors,
+                                  queueCapacity, acceptQueueSize, gzipMinBytes, threadMode);
+    }
+
+    public ServerSettings withThreadMode(ThreadMode mode) {
+        return new ServerSettings(port, minThreads, maxThreads, idleTimeoutMillis, acceptors, selectors,
+                                  queueCapacity, acceptQueueSize, gzipMinBytes, mode);
+    }
+}
@@ -0,0 +1,25 @@
+package com.mealscan.config;
+
+// Startup settings come from a system property, falling back to an environment variable.
+public final class Settings {
+    
+    private Settings() {}
+    
+    public static String stringValue(String property, String env, String defaultValue) {
+        String value = System.getProperty(property, System.getenv(env));
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+    
+    public static int intValue(String property, String env, int defaultValue) {
+        String value = stringValue(property, env, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + property + " '" + value + "', using default " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.mealscan.dao;
+
+import com.mealscan.config.DatabaseInitializer;
+import com.mealscan.model.Record;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BillLedgerDAO {
+    
+    private static final String DUPLICATE_KEY_STATE = "23505";
+    
+    private static final String APPLY_DELTA_SQL = """
+        MERGE INTO monthly_bill_totals t
+        USING (VALUES (CAST(? AS INT), CAST(? AS VARCHAR(20)), CAST(? AS INT), CAST(? AS INT),
+                       CAST(? AS DECIMAL(14, 2)), CAST(? AS INT)))
+              AS d (student_id, type, bill_year, bill_month, amount, cnt)
+        ON t.student_id = d.student_id AND t.type = d.type
+           AND t.bill_year = d.bill_year AND t.bill_month = d.bill_month
+        WHEN MATCHED THEN UPDATE SET total = t.total + d.amount, record_count = t.record_count + d.cnt,
+                                     version = t.version + 1
+        WHEN NOT MATCHED THEN INSERT (student_id, type, bill_year, bill_month, total, record_count)
+             VALUES (d.student_id, d.type, d.bill_year, d.bill_month, d.amount, d.cnt)
+    """;
+    
+    private static final String APPLY_CONTRACTOR_DELTA_SQL = """
+        MERGE INTO contractor_monthly_totals t
+        USING (VALUES (CAST(? AS INT), CAST(? AS INT), CAST(? AS INT), CAST(? AS DECIMAL(14, 2)), CAST(? AS INT)))
+              AS d (contractor_id, bill_year, bill_month, amount, cnt)
+        ON t.contractor_id = d.contractor_id AND t.bill_year = d.bill_year AND t.bill_month = d.bill_month
+        WHEN MATCHED THEN UPDATE SET total = t.total + d.amount, record_count = t.record_count + d.cnt
+        WHEN NOT MATCHED THEN INSERT (contractor_id, bill_year, bill_month, total, record_count)
+             VALUES (d.contractor_id, d.bill_year, d.bill_month, d.amount, d.cnt)
+    """;
+    
+    public record MonthlyTotal(BigDecimal total, int recordCount) {
+        public static final MonthlyTotal EMPTY = new MonthlyTotal(BigDecimal.ZERO, 0);
+    }
+    
+    private record LedgerKey(int studentId, Record.RecordType type, int year, int month) {
+        static LedgerKey of(Record record) {
+            LocalDate date = record.getRecordDate();
+            return new LedgerKey(record.getStudentId(), record.getType(), date.getYear(), date.getMonthValue());
+        }
+    }
+    
+    private record ContractorKey(int contractorId, int year, int month) {
+        static ContractorKey of(Record record) {
+            LocalDate date = record.getRecordDate();
+            return new ContractorKey(record.getContractorId(), date.getYear(), date.getMonthValue());
+        }
+    }
+    
+    private final DataSource dataSource;
+    
+    public BillLedgerDAO() {
+        this(DatabaseInitializer.getDataSource());
+    }
+    
+    public BillLedgerDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+    
+    public MonthlyTotal getMonthlyTotal(int studentId, Record.RecordType type, int year, int month) throws Exception {
+        String sql = """
+            SELECT total, record_count FROM monthly_bill_totals
+            WHERE student_id = ? AND type = ? AND bill_year = ? AND bill_month = ?
+        """;
+        
+        try (QueryTrace trace = QueryTrace.start("BillLedgerDAO.getMonthlyTotal");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setInt(1, studentId);
+            pstmt.setString(2, type.name());
+            pstmt.setInt(3, year);
+            pstmt.setInt(4, month);
+            
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                if (trace.next(rs)) {
+                    return new MonthlyTotal(rs.getBigDecimal("total"), rs.getInt("record_count"));
+                }
+            }
+        }
+        return MonthlyTotal.EMPTY;
+    }
+    
+    // Bumped by every change to the month's records, so it identifies one exact bill. A month that
+    // has never had a record has no row and reports 0.
+    public long getVersion(int studentId, Record.RecordType type, int year, int month) throws Exception {
+        String sql = """
+            SELECT version FROM monthly_bill_totals
+            WHERE student_id = ? AND type = ? AND bill_year = ? AND bill_month = ?
+        """;
+        
+        try (QueryTrace trace = QueryTrace.start("BillLedgerDAO.getVersion");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setInt(1, studentId);
+            pstmt.setString(2, type.name());
+            pstmt.setInt(3, year);
+            pstmt.setInt(4, month);
+            
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                return trace.next(rs) ? rs.getLong(1) : 0;
+            }
+        }
+    }
+    
+    // Rebuilds every student and contractor ledger row from the raw records table and returns how
+    // many rows had drifted.
+    // Meant for quiet periods: uploads committed while it runs may need another pass.
+    public int rebuild() throws Exception {
+        String driftSql = """
+            WITH ledger AS (
+                SELECT student_id, type, bill_year, bill_month, total, record_count
+                FROM monthly_bill_totals WHERE record_count <> 0
+            ), actual AS (
+                SELECT student_id, type, YEAR(record_date) AS bill_year, MONTH(record_date) AS bill_month,
+                       SUM(cost) AS total, COUNT(*) AS record_count
+                FROM records GROUP BY student_id, type, YEAR(record_date), MONTH(record_date)
+            )
+            SELECT (SELECT COUNT(*) FROM (SELECT * FROM ledger EXCEPT SELECT * FROM actual) a)
+                 + (SELECT COUNT(*) FROM (SELECT * FROM actual EXCEPT SELECT * FROM ledger) b)
+        """;
+        String contractorDriftSql = """
+            WITH ledger AS (
+                SELECT contractor_id, bill_year, bill_month, total, record_count
+                FROM contractor_monthly_totals WHERE record_count <> 0
+            ), actual AS (
+                SELECT contractor_id, YEAR(record_date) AS bill_year, MONTH(record_date) AS bill_month,
+                       SUM(cost) AS total, COUNT(*) AS record_count
+                FROM records GROUP BY contractor_id, YEAR(record_date), MONTH(record_date)
+            )
+            SELECT (SELECT COUNT(*) FROM (SELECT * FROM ledger EXCEPT SELECT * FROM actual) a)
+                 + (SELECT COUNT(*) FROM (SELECT * FROM actual EXCEPT SELECT * FROM ledger) b)
+        """;
+        // Every row gets a version above any issued so far, so no cached bill survives a rebuild. A
+        // month left without records keeps its row, zeroed: a new row would start again at version
+        // 1 and could match an ETag issued for that month long ago.
+        String resetSql = "UPDATE monthly_bill_totals SET total = 0, record_count = 0, version = ?";
+        String populateSql = """
+            MERGE INTO monthly_bill_totals t
+            USING (SELECT student_id, type, YEAR(record_date) AS bill_year, MONTH(record_date) AS bill_month,
+                          SUM(cost) AS total, COUNT(*) AS cnt
+                   FROM records
+                   GROUP BY student_id, type, YEAR(record_date), MONTH(record_date)) d
+            ON t.student_id = d.student_id AND t.type = d.type
+               AND t.bill_year = d.bill_year AND t.bill_month = d.bill_month
+            WHEN MATCHED THEN UPDATE SET total = d.total, record_count = d.cnt
+            WHEN NOT MATCHED THEN INSERT (student_id, type, bill_year, bill_month, total, record_count, version)
+                 VALUES (d.student_id, d.type, d.bill_year, d.bill_month, d.total, d.cnt, CAST(? AS BIGINT))
+        """;
+        String populateContractorSql = """
+            INSERT INTO contractor_monthly_totals (contractor_id, bill_year, bill_month, total, record_count)
+            SELECT contractor_id, YEAR(record_date), MONTH(record_date), SUM(cost), COUNT(*)
+            FROM records
+            GROUP BY contractor_id, YEAR(record_date), MONTH(record_date)
+        """;
+        
+        try (QueryTrace trace = QueryTrace.start("BillLedgerDAO.rebuild");
+             Connection conn = trace.acquired(dataSource.getConnection())) {
+            conn.setAutoCommit(false);
+            
+            try (PreparedStatement drift = trace.prepare(conn, driftSql);
+                 PreparedStatement contractorDrift = trace.prepare(conn, contractorDriftSql);
+                 PreparedStatement maxVersion = trace.prepare(conn, "SELECT COALESCE(MAX(version), 0) + 1 FROM monthly_bill_totals");
+                 PreparedStatement reset = trace.prepare(conn, resetSql);
+                 PreparedStatement populate = trace.prepare(conn, populateSql);
+                 PreparedStatement clearContractor = trace.prepare(conn, "DELETE FROM contractor_monthly_totals");
+                 PreparedStatement populateContractor = trace.prepare(conn, populateContractorSql)) {
+                int drifted;
+                try (ResultSet rs = trace.executeQuery(drift)) {
+                    drifted = trace.next(rs) ? rs.getInt(1) : 0;
+                }
+                try (ResultSet rs = trace.executeQuery(contractorDrift)) {
+                    drifted += trace.next(rs) ? rs.getInt(1) : 0;
+                }
+                long nextVersion;
+                try (ResultSet rs = trace.executeQuery(maxVersion)) {
+                    nextVersion = trace.next(rs) ? rs.getLong(1) : 1;
+                }
+                reset.setLong(1, nextVersion);
+                trace.executeUpdate(reset);
+                populate.setLong(1, nextVersion);
+                trace.executeUpdate(populate);
+                trace.executeUpdate(clearContractor);
+                trace.executeUpdate(populateContractor);
+                
+                conn.commit();
+                return drifted;
+                
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+    
+    void recordInserted(Connection conn, List<Record> records) throws SQLException {
+        Map<LedgerKey, MonthlyTotal> deltas = new LinkedHashMap<>();
+        for (Record record : records) {
+            deltas.merge(LedgerKey.of(record), new MonthlyTotal(record.getCost(), 1),
+                (a, b) -> new MonthlyTotal(a.total().add(b.total()), a.recordCount() + b.recordCount()));
+        }
+        for (Map.Entry<LedgerKey, MonthlyTotal> delta : deltas.entrySet()) {
+            applyDelta(conn, delta.getKey(), delta.getValue().total(), delta.getValue().recordCount());
+        }
+        
+        Map<ContractorKey, MonthlyTotal> contractorDeltas = new LinkedHashMap<>();
+        for (Record record : records) {
+            contractorDeltas.merge(ContractorKey.of(record), new MonthlyTotal(record.getCost(), 1),
+                (a, b) -> new MonthlyTotal(a.total().add(b.total()), a.recordCount() + b.recordCount()));
+        }
+        for (Map.Entry<ContractorKey, MonthlyTotal> delta : contractorDeltas.entrySet()) {
+            applyContractorDelta(conn, delta.getKey(), delta.getValue().total(), delta.getValue().recordCount());
+        }
+    }
+    
+    void recordDeleted(Connection conn, Record record) throws SQLException {
+        applyDelta(conn, LedgerKey.of(record), record.getCost().negate(), -1);
+        applyContractorDelta(conn, ContractorKey.of(record), record.getCost().negate(), -1);
+    }
+    
+    // Runs before a user's records are removed with them. A contractor's uploads come off their
+    // students' bills, and a student's meals off the earnings of the contractors who served them;
+    // the deleted user's own ledger rows cascade.
+    void userRecordsDeleted(Connection conn, int userId) throws SQLException {
+        String sql = """
+            MERGE INTO monthly_bill_totals t
+            USING (SELECT student_id, type, YEAR(record_date) AS bill_year, MONTH(record_date) AS bill_month,
+                          SUM(cost) AS amount, COUNT(*) AS cnt
+                   FROM records WHERE contractor_id = ?
+                   GROUP BY student_id, type, YEAR(record_date), MONTH(record_date)) d
+            ON t.student_id = d.student_id AND t.type = d.type
+               AND t.bill_year = d.bill_year AND t.bill_month = d.bill_month
+            WHEN MATCHED THEN UPDATE SET total = t.total - d.amount, record_count = t.record_count - d.cnt,
+                                         version = t.version + 1
+        """;
+        
+        String contractorSql = """
+            MERGE INTO contractor_monthly_totals t
+            USING (SELECT contractor_id, YEAR(record_date) AS bill_year, MONTH(record_date) AS bill_month,
+                          SUM(cost) AS amount, COUNT(*) AS cnt
+                   FROM records WHERE student_id = ?
+                   GROUP BY contractor_id, YEAR(record_date), MONTH(record_date)) d
+            ON t.contractor_id = d.contractor_id AND t.bill_year = d.bill_year AND t.bill_month = d.bill_month
+            WHEN MATCHED THEN UPDATE SET total = t.total - d.amount, record_count = t.record_count - d.cnt
+        """;
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement contractorPstmt = conn.prepareStatement(contractorSql)) {
+            pstmt.setInt(1, userId);
+            pstmt.executeUpdate();
+            
+            contractorPstmt.setInt(1, userId);
+            contractorPstmt.executeUpdate();
+        }
+    }
+    
+    private void applyDelta(Connection conn, LedgerKey key, BigDecimal amount, int count) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(APPLY_DELTA_SQL)) {
+            pstmt.setInt(1, key.studentId());
+            pstmt.setString(2, key.type().name());
+            pstmt.setInt(3, key.year());
+            pstmt.setInt(4, key.month());
+            pstmt.setBigDecimal(5, amount);
+            pstmt.setInt(6, count);
+            
+            try {
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                // Two writers inserted the same new month concurrently; the row exists now, so the retry updates it.
+                if (!DUPLICATE_KEY_STATE.equals(e.getSQLState())) {
+                    throw e;
+                }
+                pstmt.executeUpdate();
+            }
+        }
+    }
+    
+    private void applyContractorDelta(Connection conn, ContractorKey key, BigDecimal amount, int count)
+            throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(APPLY_CONTRACTOR_DELTA_SQL)) {
+            pstmt.setInt(1, key.contractorId());
+            pstmt.setInt(2, key.year());
+            pstmt.setInt(3, key.month());
+            pstmt.setBigDecimal(4, amount);
+            pstmt.setInt(5, count);
+            
+            try {
+                pstmt.executeUpdate();
+            } catch (SQLException e) {
+                if (!DUPLICATE_KEY_STATE.equals(e.getSQLState())) {
+                    throw e;
+                }
+                pstmt.executeUpdate();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,342 @@
+package com.mealscan.dao;
+
+import com.mealscan.config.DatabaseInitializer;
+import com.mealscan.model.Record;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Catches a mess student being scanned twice for the same meal on the same day. Each recent day
+// has a Bloom filter over its MESS (student, meal type) slots, so the usual upload, a slot not
+// yet taken, is cleared in memory. Only a possible hit pays for the exact check, a lookup on the
+// slot index from migration 7. A day's filter is registered before it is loaded from the table,
+// and this process adds its committed inserts after their commit; until it is loaded every check
+// goes to the index. Records written by another process on the same H2 file (RecordImportTool)
+// never reach the filter, so a filter is rebuilt from the table once its TTL has passed, and a
+// duplicate of such a record can slip through until then. Deleted records stay in the filter and
+// only cost an exact check. Two uploads for one slot racing each other can both get through. Only
+// today and the days just before it get a filter; back-dated and future-dated scans always take
+// the index, so they cannot push out the filters that the day's uploads rely on.
+public final class DuplicateScans {
+    
+    public enum Mode {
+        OFF,
+        FLAG,
+        REJECT;
+        
+        public static Mode parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown duplicate scan mode '" + value + "', expected off, flag or reject");
+            }
+        }
+    }
+    
+    public static final int DEFAULT_EXPECTED_PER_DAY = 20_000;
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+    // Filters are kept for today and the days before it, this many days in all.
+    private static final int MAX_DAYS = 8;
+    // Ten bits and seven probes per slot give about a 1% false-positive rate at the expected load.
+    private static final int BITS_PER_SLOT = 10;
+    private static final int PROBES = 7;
+    
+    private static volatile DuplicateScans instance;
+    
+    private final Mode mode;
+    private final int bitsPerDay;
+    private final long ttlNanos;
+    private final Map<LocalDate, DayFilter> days = new ConcurrentHashMap<>();
+    // One loader thread, so a burst of new days loads one at a time instead of tying up the pool.
+    private final ThreadPoolExecutor loader;
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder filterMisses = new LongAdder();
+    private final LongAdder exactChecks = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    
+    private DuplicateScans(Mode mode, int expectedPerDay, Duration ttl) {
+        this.mode = mode;
+        this.bitsPerDay = Math.max(64, expectedPerDay) * BITS_PER_SLOT;
+        this.ttlNanos = ttl.toNanos();
+        this.loader = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_DAYS), task -> {
+            Thread thread = new Thread(task, "duplicate-scans");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        loader.allowCoreThreadTimeOut(true);
+    }
+    
+    public static synchronized void initialize(Mode mode, int expectedPerDay) {
+        initialize(mode, expectedPerDay, DEFAULT_TTL);
+    }
+    
+    static synchronized void initialize(Mode mode, int expectedPerDay, Duration ttl) {
+        instance = new DuplicateScans(mode, expectedPerDay, ttl);
+    }
+    
+    public static boolean rejects() {
+        return get().mode == Mode.REJECT;
+    }
+    
+    // Builds the filter for a day up front, so its first uploads are not checked against the index.
+    public static void preload(LocalDate date) throws Exception {
+        DuplicateScans current = get();
+        if (current.mode != Mode.OFF && inWindow(date, LocalDate.now())) {
+            long now = System.nanoTime();
+            current.load(current.days.compute(date, (d, filter) ->
+                filter != null && !filter.isExpired(now) ? filter : current.newFilter(d, now)));
+        }
+    }
+    
+    // Id of a record already in the same mess slot, or null. A record stored under this same
+    // Idempotency-Key is the upload being retried, not a duplicate of it.
+    public static Integer findDuplicate(Record record, String idempotencyKey) throws Exception {
+        DuplicateScans current = get();
+        if (current.mode == Mode.OFF || record.getType() != Record.RecordType.MESS) {
+            return null;
+        }
+        return current.check(record, idempotencyKey);
+    }
+    
+    public static Map<String, Object> snapshot() {
+        DuplicateScans current = get();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("days", current.days.size());
+        snapshot.put("checks", current.checks.sum());
+        snapshot.put("filterMisses", current.filterMisses.sum());
+        snapshot.put("exactChecks", current.exactChecks.sum());
+        snapshot.put("duplicates", current.duplicates.sum());
+        return snapshot;
+    }
+    
+    // Call after the transaction that inserted the records has committed.
+    static void recorded(List<Record> records) {
+        DuplicateScans current = instance;
+        if (current == null || current.mode == Mode.OFF) {
+            return;
+        }
+        for (Record record : records) {
+            if (record.getType() == Record.RecordType.MESS) {
+                DayFilter filter = current.days.get(record.getRecordDate());
+                if (filter != null) {
+                    filter.add(record.getStudentId(), record.getMealType());
+                }
+            }
+        }
+    }
+    
+    private static DuplicateScans get() {
+        DuplicateScans current = instance;
+        if (current == null) {
+            synchronized (DuplicateScans.class) {
+                if (instance == null) {
+                    instance = new DuplicateScans(Mode.FLAG, DEFAULT_EXPECTED_PER_DAY, DEFAULT_TTL);
+                }
+                current = instance;
+            }
+        }
+        return current;
+    }
+    
+    private Integer check(Record record, String idempotencyKey) throws Exception {
+        checks.increment();
+        DayFilter filter = filterFor(record.getRecordDate());
+        if (filter != null && filter.loaded && !filter.mightContain(record.getStudentId(), record.getMealType())) {
+            filterMisses.increment();
+            return null;
+        }
+        
+        exactChecks.increment();
+        Integer duplicateOf = findInSlot(record, idempotencyKey);
+        if (duplicateOf != null) {
+            duplicates.increment();
+        }
+        return duplicateOf;
+    }
+    
+    // A day seen for the first time, or whose filter has expired, gets a new filter loaded in the
+    // background, off the request. Null for a date outside the window, which is only ever checked
+    // against the index.
+    private DayFilter filterFor(LocalDate date) {
+        long now = System.nanoTime();
+        DayFilter filter = days.get(date);
+        if (filter != null && !filter.isExpired(now)) {
+            return filter;
+        }
+        LocalDate today = LocalDate.now();
+        if (!inWindow(date, today)) {
+            return null;
+        }
+        DayFilter created = newFilter(date, now);
+        if (filter == null) {
+            filter = days.putIfAbsent(date, created);
+            if (filter != null) {
+                return filter;
+            }
+        } else if (!days.replace(date, filter, created)) {
+            // Another check replaced it first.
+            return days.get(date);
+        }
+        // Days the window has moved past since their filter was built; never today's.
+        days.keySet().removeIf(day -> !inWindow(day, today));
+        try {
+            loader.execute(() -> {
+                try {
+                    load(created);
+                } catch (Exception e) {
+                    // Left unloaded it would send every check to the index; drop it so the next one retries.
+                    days.remove(date, created);
+                    e.printStackTrace();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            days.remove(date, created);
+        }
+        return created;
+    }
+    
+    private DayFilter newFilter(LocalDate date, long now) {
+        return new DayFilter(date, bitsPerDay, now + ttlNanos);
+    }
+    
+    private static boolean inWindow(LocalDate date, LocalDate today) {
+        return !date.isAfter(today) && date.isAfter(today.minusDays(MAX_DAYS));
+    }
+    
+    private void load(DayFilter filter) throws Exception {
+        if (filter.loaded) {
+            return;
+        }
+        String sql = "SELECT student_id, meal_type FROM records WHERE record_date = ? AND type = 'MESS'";
+        
+        try (QueryTrace trace = QueryTrace.start("DuplicateScans.load");
+             Connection conn = trace.acquired(dataSource().getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setDate(1, Date.valueOf(filter.date));
+            pstmt.setFetchSize(1_000);
+            
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                while (trace.next(rs)) {
+                    filter.add(rs.getInt("student_id"), rs.getString("meal_type"));
+                }
+            }
+        }
+        filter.loaded = true;
+    }
+    
+    private Integer findInSlot(Record record, String idempotencyKey) throws Exception {
+        String slotSql = """
+            SELECT id FROM records
+            WHERE record_date = ? AND type = 'MESS' AND student_id = ? AND meal_type = ?
+            ORDER BY id
+        """;
+        String keySql = "SELECT record_id FROM upload_keys WHERE contractor_id = ? AND idempotency_key = ?";
+        
+        try (QueryTrace trace = QueryTrace.start("DuplicateScans.findInSlot");
+             Connection conn = trace.acquired(dataSource().getConnection());
+             PreparedStatement slot = trace.prepare(conn, slotSql)) {
+            
+            slot.setDate(1, Date.valueOf(record.getRecordDate()));
+            slot.setInt(2, record.getStudentId());
+            slot.setString(3, record.getMealType());
+            
+            List<Integer> ids = new ArrayList<>();
+            try (ResultSet rs = trace.executeQuery(slot)) {
+                while (trace.next(rs)) {
+                    ids.add(rs.getInt("id"));
+                }
+            }
+            if (ids.isEmpty() || idempotencyKey == null) {
+                return ids.isEmpty() ? null : ids.get(0);
+            }
+            
+            try (PreparedStatement key = trace.prepare(conn, keySql)) {
+                key.setInt(1, record.getContractorId());
+                key.setString(2, idempotencyKey);
+                try (ResultSet rs = trace.executeQuery(key)) {
+                    if (trace.next(rs) && ids.contains(rs.getInt("record_id"))) {
+                        return null;
+                    }
+                }
+            }
+            return ids.get(0);
+        }
+    }
+    
+    // The data source is set up after initialize runs at startup.
+    private DataSource dataSource() {
+        return DatabaseInitializer.getDataSource();
+    }
+    
+    private static final class DayFilter {
+        private final LocalDate date;
+        private final AtomicLongArray words;
+        private final int bits;
+        private final long expiresAt;
+        private volatile boolean loaded;
+        
+        DayFilter(LocalDate date, int bits, long expiresAt) {
+            this.date = date;
+            this.words = new AtomicLongArray((bits + 63) / 64);
+            this.bits = words.length() * 64;
+            this.expiresAt = expiresAt;
+        }
+        
+        boolean isExpired(long now) {
+            return expiresAt - now < 0;
+        }
+        
+        void add(int studentId, String mealType) {
+            long h1 = hash(studentId, mealType);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < PROBES; i++) {
+                int bit = (int) Math.floorMod(h1 + i * h2, (long) bits);
+                long mask = 1L << bit;
+                int word = bit >>> 6;
+                if ((words.get(word) & mask) == 0) {
+                    words.getAndUpdate(word, w -> w | mask);
+                }
+            }
+        }
+        
+        boolean mightContain(int studentId, String mealType) {
+            long h1 = hash(studentId, mealType);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < PROBES; i++) {
+                int bit = (int) Math.floorMod(h1 + i * h2, (long) bits);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private static long hash(int studentId, String mealType) {
+            return mix(((long) studentId << 32) ^ (mealType.hashCode() & 0xffffffffL));
+        }
+        
+        // The finalizer of SplitMix64.
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
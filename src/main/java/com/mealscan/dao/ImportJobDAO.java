@@ -0,0 +1,174 @@
+package com.mealscan.dao;
+
+import com.mealscan.config.DatabaseInitializer;
+import com.mealscan.model.ImportJob;
+import com.mealscan.model.Record;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class ImportJobDAO {
+    
+    // Another run advanced the job's checkpoint first; this run's chunk was rolled back.
+    public static final class CheckpointConflictException extends Exception {
+        CheckpointConflictException(String message) {
+            super(message);
+        }
+    }
+    
+    // A RUNNING job that has not checkpointed for this long is taken to have died with its process.
+    private static final Duration STALE_RUN = Duration.ofMinutes(10);
+    
+    private final DataSource dataSource;
+    private final RecordDAO recordDAO;
+    
+    public ImportJobDAO() {
+        this(DatabaseInitializer.getDataSource());
+    }
+    
+    public ImportJobDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.recordDAO = new RecordDAO(dataSource);
+    }
+    
+    public ImportJob createJob(ImportJob job) throws Exception {
+        String sql = "INSERT INTO import_jobs (contractor_id, source, format, status) VALUES (?, ?, ?, ?)";
+        
+        try (QueryTrace trace = QueryTrace.start("ImportJobDAO.createJob");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql, Statement.RETURN_GENERATED_KEYS)) {
+            
+            pstmt.setInt(1, job.getContractorId());
+            pstmt.setString(2, job.getSource());
+            pstmt.setString(3, job.getFormat());
+            pstmt.setString(4, job.getStatus().name());
+            
+            trace.executeUpdate(pstmt);
+            
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                if (rs.next()) {
+                    job.setId(rs.getInt(1));
+                    return job;
+                }
+            }
+        }
+        throw new Exception("Failed to create import job");
+    }
+    
+    public ImportJob findById(int jobId) throws Exception {
+        String sql = "SELECT * FROM import_jobs WHERE id = ?";
+        
+        try (QueryTrace trace = QueryTrace.start("ImportJobDAO.findById");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setInt(1, jobId);
+            
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                if (trace.next(rs)) {
+                    return extractJob(rs);
+                }
+            }
+        }
+        return null;
+    }
+    
+    // Marks the job RUNNING for the caller and returns it as stored, or null while another run
+    // holds it. A run that stopped checkpointing long ago is taken over.
+    public ImportJob claimJob(int jobId) throws Exception {
+        String sql = """
+            UPDATE import_jobs SET status = 'RUNNING', updated_at = CURRENT_TIMESTAMP
+            WHERE id = ? AND (status <> 'RUNNING' OR updated_at < ?)
+        """;
+        
+        try (QueryTrace trace = QueryTrace.start("ImportJobDAO.claimJob");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setInt(1, jobId);
+            pstmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now().minus(STALE_RUN)));
+            
+            if (trace.executeUpdate(pstmt) == 0) {
+                return null;
+            }
+        }
+        return findById(jobId);
+    }
+    
+    // Inserts one chunk and advances the checkpoint in the same transaction. The checkpoint only
+    // moves from the value this run last saw, so if two runs of one job overlap, the second to
+    // commit a chunk rolls it back instead of inserting the same rows again.
+    public void commitChunk(ImportJob job, List<Record> records, long rowsCommitted, long rowsRejected) throws Exception {
+        String sql = """
+            UPDATE import_jobs
+            SET rows_committed = ?, records_imported = records_imported + ?, rows_rejected = ?,
+                updated_at = CURRENT_TIMESTAMP
+            WHERE id = ? AND rows_committed = ?
+        """;
+        
+        try (QueryTrace trace = QueryTrace.start("ImportJobDAO.commitChunk");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             RecordChangeLog changes = RecordChangeLog.begin(conn)) {
+            conn.setAutoCommit(false);
+            
+            try (PreparedStatement pstmt = trace.prepare(conn, sql)) {
+                if (!records.isEmpty()) {
+                    recordDAO.insertRecords(conn, changes, records);
+                }
+                
+                pstmt.setLong(1, rowsCommitted);
+                pstmt.setLong(2, records.size());
+                pstmt.setLong(3, rowsRejected);
+                pstmt.setInt(4, job.getId());
+                pstmt.setLong(5, job.getRowsCommitted());
+                if (trace.executeUpdate(pstmt) == 0) {
+                    throw new CheckpointConflictException("Import job " + job.getId() + " was advanced past row " +
+                                                          job.getRowsCommitted() + " by another run");
+                }
+                
+                conn.commit();
+                DuplicateScans.recorded(records);
+                
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        
+        job.setRowsCommitted(rowsCommitted);
+        job.setRecordsImported(job.getRecordsImported() + records.size());
+        job.setRowsRejected(rowsRejected);
+    }
+    
+    public void updateStatus(ImportJob job, ImportJob.Status status) throws Exception {
+        String sql = "UPDATE import_jobs SET status = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+        
+        try (QueryTrace trace = QueryTrace.start("ImportJobDAO.updateStatus");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setString(1, status.name());
+            pstmt.setInt(2, job.getId());
+            trace.executeUpdate(pstmt);
+        }
+        job.setStatus(status);
+    }
+    
+    private ImportJob extractJob(ResultSet rs) throws SQLException {
+        ImportJob job = new ImportJob();
+        job.setId(rs.getInt("id"));
+        job.setContractorId(rs.getInt("contractor_id"));
+        job.setSource(rs.getString("source"));
+        job.setFormat(rs.getString("format"));
+        job.setRowsCommitted(rs.getLong("rows_committed"));
+        job.setRecordsImported(rs.getLong("records_imported"));
+        job.setRowsRejected(rs.getLong("rows_rejected"));
+        job.setStatus(ImportJob.Status.valueOf(rs.getString("status")));
+        return job;
+    }
+}
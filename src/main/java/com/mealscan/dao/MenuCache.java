@@ -0,0 +1,79 @@
+package com.mealscan.dao;
+
+import com.mealscan.model.MenuSlot;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Menus by contractor, shared by every MenuDAO on the same DataSource. Every check-in scan reads
+// its contractor's menu and menus change a few times a term, so they are served from memory.
+// replaceMenu and user deletion keep it current; the TTL bounds staleness from other processes
+// sharing the H2 file (the CLI tools), which this cache cannot see.
+final class MenuCache {
+    
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+    private static final Map<DataSource, MenuCache> SHARED = new ConcurrentHashMap<>();
+    
+    private record Entry(List<MenuSlot> slots, long expiresAt) {}
+    
+    private final long ttlNanos;
+    private final Map<Integer, Entry> menus = new HashMap<>();
+    private long generation;
+    
+    MenuCache(Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+    }
+    
+    static MenuCache forDataSource(DataSource dataSource) {
+        return SHARED.computeIfAbsent(dataSource, ds -> new MenuCache(DEFAULT_TTL));
+    }
+    
+    synchronized List<MenuSlot> get(int contractorId) {
+        Entry entry = menus.get(contractorId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() - System.nanoTime() < 0) {
+            menus.remove(contractorId);
+            return null;
+        }
+        return entry.slots();
+    }
+    
+    // Read before querying the database and hand back to load(); a load that raced with a write
+    // is dropped rather than putting back the menu that was just replaced.
+    synchronized long generation() {
+        return generation;
+    }
+    
+    // Returns the menu now cached, which is the loaded one unless a newer one got there first.
+    synchronized List<MenuSlot> load(int contractorId, List<MenuSlot> slots, long loadedAt) {
+        List<MenuSlot> copy = List.copyOf(slots);
+        if (loadedAt != generation) {
+            return copy;
+        }
+        Entry current = menus.get(contractorId);
+        if (current != null && current.expiresAt() - System.nanoTime() >= 0) {
+            return current.slots();
+        }
+        menus.put(contractorId, new Entry(copy, System.nanoTime() + ttlNanos));
+        return copy;
+    }
+    
+    // For the writer, after its commit.
+    synchronized List<MenuSlot> put(int contractorId, List<MenuSlot> slots) {
+        generation++;
+        List<MenuSlot> copy = List.copyOf(slots);
+        menus.put(contractorId, new Entry(copy, System.nanoTime() + ttlNanos));
+        return copy;
+    }
+    
+    synchronized void invalidate(int contractorId) {
+        generation++;
+        menus.remove(contractorId);
+    }
+}
@@ -0,0 +1,137 @@
+package com.mealscan.dao;
+
+import com.mealscan.config.DatabaseInitializer;
+import com.mealscan.model.MenuSlot;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MenuDAO {
+    
+    private final DataSource dataSource;
+    private final MenuCache cache;
+    
+    public MenuDAO() {
+        this(DatabaseInitializer.getDataSource());
+    }
+    
+    public MenuDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.cache = MenuCache.forDataSource(dataSource);
+    }
+    
+    // Slots in order of their start time.
+    public List<MenuSlot> getMenu(int contractorId) throws Exception {
+        List<MenuSlot> cached = cache.get(contractorId);
+        if (cached != null) {
+            return cached;
+        }
+        
+        long generation = cache.generation();
+        String sql = "SELECT * FROM menu_slots WHERE contractor_id = ? ORDER BY starts_at";
+        List<MenuSlot> slots = new ArrayList<>();
+        
+        try (QueryTrace trace = QueryTrace.start("MenuDAO.getMenu");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setInt(1, contractorId);
+            
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                while (trace.next(rs)) {
+                    slots.add(extractSlot(rs));
+                }
+            }
+        }
+        return cache.load(contractorId, slots, generation);
+    }
+    
+    // The slot serving at that time, or null between meals.
+    public MenuSlot findActiveSlot(int contractorId, LocalTime time) throws Exception {
+        for (MenuSlot slot : getMenu(contractorId)) {
+            if (slot.covers(time)) {
+                return slot;
+            }
+        }
+        return null;
+    }
+    
+    public List<MenuSlot> replaceMenu(int contractorId, List<MenuSlot> slots) throws Exception {
+        String deleteSql = "DELETE FROM menu_slots WHERE contractor_id = ?";
+        String insertSql = "INSERT INTO menu_slots (contractor_id, meal_type, items, cost, starts_at, ends_at) " +
+                           "VALUES (?, ?, ?, ?, ?, ?)";
+        
+        try (QueryTrace trace = QueryTrace.start("MenuDAO.replaceMenu");
+             Connection conn = trace.acquired(dataSource.getConnection())) {
+            conn.setAutoCommit(false);
+            
+            try (PreparedStatement delete = trace.prepare(conn, deleteSql);
+                 PreparedStatement insert = trace.prepare(conn, insertSql, Statement.RETURN_GENERATED_KEYS)) {
+                
+                delete.setInt(1, contractorId);
+                trace.executeUpdate(delete);
+                
+                List<MenuSlot> saved = new ArrayList<>(slots.size());
+                for (MenuSlot slot : slots) {
+                    insert.setInt(1, contractorId);
+                    insert.setString(2, slot.mealType());
+                    insert.setString(3, slot.items());
+                    insert.setBigDecimal(4, slot.cost());
+                    insert.setTime(5, Time.valueOf(slot.startsAt()));
+                    insert.setTime(6, Time.valueOf(slot.endsAt()));
+                    trace.executeUpdate(insert);
+                    try (ResultSet rs = insert.getGeneratedKeys()) {
+                        rs.next();
+                        saved.add(slot.withId(rs.getInt(1)));
+                    }
+                }
+                saved.sort((a, b) -> a.startsAt().compareTo(b.startsAt()));
+                
+                conn.commit();
+                return cache.put(contractorId, saved);
+                
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+    
+    // Loads every menu at startup, so the first scan at each counter is already served from memory.
+    public void preload() throws Exception {
+        String sql = "SELECT * FROM menu_slots ORDER BY contractor_id, starts_at";
+        Map<Integer, List<MenuSlot>> menus = new HashMap<>();
+        long generation = cache.generation();
+        
+        try (QueryTrace trace = QueryTrace.start("MenuDAO.preload");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql);
+             ResultSet rs = trace.executeQuery(pstmt)) {
+            
+            while (trace.next(rs)) {
+                MenuSlot slot = extractSlot(rs);
+                menus.computeIfAbsent(slot.contractorId(), id -> new ArrayList<>()).add(slot);
+            }
+        }
+        menus.forEach((contractorId, slots) -> cache.load(contractorId, slots, generation));
+    }
+    
+    private MenuSlot extractSlot(ResultSet rs) throws SQLException {
+        return new MenuSlot(
+            rs.getInt("id"),
+            rs.getInt("contractor_id"),
+            rs.getString("meal_type"),
+            rs.getString("items"),
+            rs.getBigDecimal("cost"),
+            rs.getTime("starts_at").toLocalTime(),
+            rs.getTime("ends_at").toLocalTime()
+        );
+    }
+}
@@ -0,0 +1,153 @@
+package com.mealscan.dao;
+
+import com.mealscan.config.Settings;
+import com.mealscan.metrics.DaoCallEvent;
+import com.mealscan.metrics.Metrics;
+import jdk.jfr.EventType;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// Times one DAO call: the wait for a pooled connection, the time inside execute calls, and the
+// time after the first execute that went elsewhere, mostly reading rows into objects (for the
+// streaming calls that also covers writing them to the client). Closing it records the
+// Metrics.dao histogram and commits a DaoCallEvent; the event is only allocated when a flight
+// recording has it enabled. A single execute slower than mealscan.db.slowQueryMs is logged with
+// its statement, which H2 prints with the bound parameters.
+final class QueryTrace implements AutoCloseable {
+    
+    static final int DEFAULT_SLOW_QUERY_MS = 500;
+    private static final long SLOW_QUERY_NANOS = TimeUnit.MILLISECONDS.toNanos(
+        Settings.intValue("mealscan.db.slowQueryMs", "MEALSCAN_DB_SLOW_QUERY_MS", DEFAULT_SLOW_QUERY_MS));
+    private static final EventType DAO_CALL = EventType.getEventType(DaoCallEvent.class);
+    
+    private final String method;
+    private final boolean redacted;
+    private final DaoCallEvent event;
+    private final long startNanos;
+    private String sql;
+    private long rows;
+    private long acquireNanos;
+    private long executeNanos;
+    private long mappingNanos;
+    private boolean executed;
+    private long lastExecuteEnd;
+    
+    private QueryTrace(String method, boolean redacted) {
+        this.method = method;
+        this.redacted = redacted;
+        this.event = DAO_CALL.isEnabled() ? new DaoCallEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        this.startNanos = System.nanoTime();
+    }
+    
+    static QueryTrace start(String method) {
+        return new QueryTrace(method, false);
+    }
+    
+    // For statements that bind credentials: a slow one is logged without its parameters.
+    static QueryTrace startRedacted(String method) {
+        return new QueryTrace(method, true);
+    }
+    
+    // Wraps dataSource.getConnection(), which has returned by the time this runs.
+    Connection acquired(Connection conn) {
+        acquireNanos = System.nanoTime() - startNanos;
+        return conn;
+    }
+    
+    PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        noteSql(sql);
+        return conn.prepareStatement(sql);
+    }
+    
+    PreparedStatement prepare(Connection conn, String sql, int autoGeneratedKeys) throws SQLException {
+        noteSql(sql);
+        return conn.prepareStatement(sql, autoGeneratedKeys);
+    }
+    
+    ResultSet executeQuery(PreparedStatement pstmt) throws SQLException {
+        long start = beforeExecute();
+        ResultSet rs = pstmt.executeQuery();
+        afterExecute(pstmt, start);
+        return rs;
+    }
+    
+    int executeUpdate(PreparedStatement pstmt) throws SQLException {
+        long start = beforeExecute();
+        int count = pstmt.executeUpdate();
+        afterExecute(pstmt, start);
+        rows += count;
+        return count;
+    }
+    
+    int[] executeBatch(PreparedStatement pstmt) throws SQLException {
+        long start = beforeExecute();
+        int[] counts = pstmt.executeBatch();
+        afterExecute(pstmt, start);
+        for (int count : counts) {
+            rows += Math.max(count, 0);
+        }
+        return counts;
+    }
+    
+    // rs.next() that also counts the row.
+    boolean next(ResultSet rs) throws SQLException {
+        if (rs.next()) {
+            rows++;
+            return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public void close() {
+        long end = System.nanoTime();
+        if (executed) {
+            mappingNanos += end - lastExecuteEnd;
+        }
+        Metrics.dao(method).record(end - startNanos);
+        if (event != null && event.shouldCommit()) {
+            event.method = method;
+            event.sqlId = sql != null ? Integer.toHexString(sql.hashCode()) : null;
+            event.rows = rows;
+            event.acquireTime = acquireNanos;
+            event.executeTime = executeNanos;
+            event.mappingTime = mappingNanos;
+            event.commit();
+        }
+    }
+    
+    private void noteSql(String sql) {
+        if (this.sql == null) {
+            this.sql = sql;
+        }
+    }
+    
+    private long beforeExecute() {
+        long now = System.nanoTime();
+        if (executed) {
+            mappingNanos += now - lastExecuteEnd;
+        }
+        return now;
+    }
+    
+    private void afterExecute(PreparedStatement pstmt, long start) throws SQLException {
+        long end = System.nanoTime();
+        long elapsed = end - start;
+        executeNanos += elapsed;
+        executed = true;
+        lastExecuteEnd = end;
+        if (SLOW_QUERY_NANOS > 0 && elapsed >= SLOW_QUERY_NANOS) {
+            // Unwrapped past the pool's proxy, whose toString only names the statement it wraps.
+            String statement = redacted ? sql + " {parameters redacted}" : pstmt.unwrap(PreparedStatement.class).toString();
+            System.err.println("Slow query in " + method + " (" + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms): " +
+                               statement.replaceAll("\\s+", " ").strip());
+        }
+    }
+}
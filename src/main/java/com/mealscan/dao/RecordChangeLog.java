@@ -0,0 +1,107 @@
+package com.mealscan.dao;
+
+import com.mealscan.model.Record;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Every insert into records and every tombstone takes the next value of record_change_seq, so
+// "what changed after N" is a range scan. A value is taken when the row is written but only
+// becomes visible at commit; a transaction that took 10 can commit after one that took 11. So a
+// writing transaction first takes a floor value and holds it open in open_change_floors until it
+// ends, and a reader's watermark stays below the lowest open floor. The floors live in the
+// database because the CLI tools write over AUTO_SERVER from their own process.
+//
+// The floor row is committed before the writer takes any other value, and a reader takes its
+// ceiling before it reads the floors. A floor the reader cannot see yet therefore belongs to a
+// writer whose changes will all sort above that ceiling. A floor left behind by a process that
+// died mid-transaction is ignored once it is older than any transaction runs.
+final class RecordChangeLog implements AutoCloseable {
+    
+    private static final int ABANDONED_FLOOR_MINUTES = 10;
+    
+    private final Connection conn;
+    private final long floor;
+    
+    private RecordChangeLog(Connection conn, long floor) {
+        this.conn = conn;
+        this.floor = floor;
+    }
+    
+    // Call before the transaction writes to records, with the connection still in autocommit;
+    // close after it commits or rolls back, with autocommit restored.
+    static RecordChangeLog begin(Connection conn) throws SQLException {
+        long floor = nextValue(conn);
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO open_change_floors (floor) VALUES (?)")) {
+            pstmt.setLong(1, floor);
+            pstmt.executeUpdate();
+        }
+        return new RecordChangeLog(conn, floor);
+    }
+    
+    // Highest change sequence that no open transaction can still commit below.
+    static long watermark(Connection conn) throws SQLException {
+        long ceiling = nextValue(conn) - 1;
+        String sql = "SELECT MIN(floor) FROM open_change_floors WHERE opened_at > DATEADD('MINUTE', ?, CURRENT_TIMESTAMP)";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, -ABANDONED_FLOOR_MINUTES);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                long lowest = rs.getLong(1);
+                return rs.wasNull() ? ceiling : Math.min(ceiling, lowest - 1);
+            }
+        }
+    }
+    
+    void recordDeleted(Connection conn, Record record) throws SQLException {
+        String sql = "INSERT INTO record_tombstones (record_id, student_id, contractor_id, type) VALUES (?, ?, ?, ?)";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, record.getId());
+            pstmt.setInt(2, record.getStudentId());
+            pstmt.setInt(3, record.getContractorId());
+            pstmt.setString(4, record.getType().name());
+            pstmt.executeUpdate();
+        }
+    }
+    
+    // Tombstones for every record a user is on, before they are removed with the user.
+    void userRecordsDeleted(Connection conn, int userId) throws SQLException {
+        String sql = """
+            INSERT INTO record_tombstones (record_id, student_id, contractor_id, type)
+            SELECT id, student_id, contractor_id, type FROM records WHERE student_id = ? OR contractor_id = ?
+        """;
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, userId);
+            pstmt.executeUpdate();
+        }
+    }
+    
+    @Override
+    public void close() {
+        String sql = "DELETE FROM open_change_floors WHERE floor = ? OR opened_at < DATEADD('MINUTE', ?, CURRENT_TIMESTAMP)";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, floor);
+            pstmt.setInt(2, -ABANDONED_FLOOR_MINUTES);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            // Left in place it only holds readers back until it counts as abandoned.
+            e.printStackTrace();
+        }
+    }
+    
+    private static long nextValue(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("VALUES NEXT VALUE FOR record_change_seq")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -2,38 +2,164 @@ package com.mealscan.dao;
 
 import com.mealscan.config.DatabaseInitializer;
 import com.mealscan.model.Record;
+import com.mealscan.model.RecordChangeSet;
+import com.mealscan.model.RecordCursor;
+import com.mealscan.model.RecordPage;
 
+import javax.sql.DataSource;
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 public class RecordDAO {
     
+    // Rows strictly after the cursor in (record_date, created_at, id) DESC order. The leading
+    // record_date bound keeps the predicate usable as an index range.
+    private static final String KEYSET_PREDICATE = """
+            AND r.record_date <= ?
+            AND (r.record_date < ? OR r.created_at < ? OR (r.created_at = ? AND r.id < ?))
+        """;
+    
+    private static final String KEYSET_ORDER = """
+            ORDER BY r.record_date DESC, r.created_at DESC, r.id DESC
+            LIMIT ?
+        """;
+    
+    // The bill and listing queries are checked against their indexes by RecordQueryPlanTest.
+    static final String MONTHLY_BILL_SQL = """
+            SELECT r.*, u.name as student_name, c.name as contractor_name
+            FROM records r
+            JOIN users u ON r.student_id = u.id
+            JOIN users c ON r.contractor_id = c.id
+            WHERE r.student_id = ? AND r.type = ?
+            AND r.record_date >= ? AND r.record_date < ?
+            ORDER BY r.record_date ASC
+        """;
+    
+    private static final int STREAM_FETCH_SIZE = 200;
+    private static final int BATCH_CHUNK_SIZE = 500;
+    
+    private final DataSource dataSource;
+    private final BillLedgerDAO ledgerDAO;
+    
+    public RecordDAO() {
+        this(DatabaseInitializer.getDataSource());
+    }
+    
+    public RecordDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.ledgerDAO = new BillLedgerDAO(dataSource);
+    }
+    
+    // Left to itself H2 costs the bare contractor_id foreign-key index the same as the date index,
+    // and it only reads an index in order when ORDER BY names its columns from the first, in their
+    // direction. Otherwise every page sorts the contractor's whole history to return a few rows.
+    static String contractorListingSql(boolean afterCursor) {
+        return """
+            SELECT r.*, u.name as student_name, c.name as contractor_name
+            FROM records r USE INDEX (idx_records_contractor_date)
+            JOIN users u ON r.student_id = u.id
+            JOIN users c ON r.contractor_id = c.id
+            WHERE r.contractor_id = ?
+        """ + (afterCursor ? KEYSET_PREDICATE : "") + """
+            ORDER BY r.contractor_id, r.record_date DESC, r.created_at DESC, r.id DESC
+            LIMIT ?
+        """;
+    }
+    
     public Record createRecord(Record record) throws Exception {
+        createRecords(List.of(record));
+        return record;
+    }
+    
+    public List<Record> createRecords(List<Record> records) throws Exception {
+        return createRecords(records, null);
+    }
+    
+    // idempotencyKeys, when given, lines up with records and is null for a record sent without one.
+    // The keys commit with the rows, so a key is taken exactly when its record exists. A record
+    // whose key is already stored is a replay and is left out rather than failing the rest; only
+    // the records actually inserted are returned.
+    List<Record> createRecords(List<Record> records, List<String> idempotencyKeys) throws Exception {
+        try (QueryTrace trace = QueryTrace.start("RecordDAO.createRecords");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             RecordChangeLog changes = RecordChangeLog.begin(conn)) {
+            conn.setAutoCommit(false);
+            
+            try {
+                List<Record> inserted = records;
+                List<String> keys = idempotencyKeys;
+                if (idempotencyKeys != null) {
+                    Set<Integer> stored = UploadKeys.findStored(conn, records, idempotencyKeys);
+                    if (!stored.isEmpty()) {
+                        inserted = new ArrayList<>(records.size());
+                        keys = new ArrayList<>(records.size());
+                        for (int i = 0; i < records.size(); i++) {
+                            if (!stored.contains(i)) {
+                                inserted.add(records.get(i));
+                                keys.add(idempotencyKeys.get(i));
+                            }
+                        }
+                    }
+                }
+                if (!inserted.isEmpty()) {
+                    insertRecords(conn, changes, inserted);
+                    if (keys != null) {
+                        UploadKeys.insert(conn, inserted, keys);
+                    }
+                }
+                conn.commit();
+                DuplicateScans.recorded(inserted);
+                return inserted;
+                
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+    
+    // Runs inside the caller's transaction so other DAOs can commit extra state atomically with the rows.
+    // The rows take their change_seq from the column default, above the floor the caller's change log holds.
+    void insertRecords(Connection conn, RecordChangeLog changes, List<Record> records) throws Exception {
         String sql = "INSERT INTO records (student_id, contractor_id, type, meal_type, items, cost, record_date) " +
                      "VALUES (?, ?, ?, ?, ?, ?, ?)";
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            
-            pstmt.setInt(1, record.getStudentId());
-            pstmt.setInt(2, record.getContractorId());
-            pstmt.setString(3, record.getType().name());
-            pstmt.setString(4, record.getMealType());
-            pstmt.setString(5, record.getItems());
-            pstmt.setBigDecimal(6, record.getCost());
-            pstmt.setDate(7, Date.valueOf(record.getRecordDate()));
-            
-            pstmt.executeUpdate();
-            
-            try (ResultSet rs = pstmt.getGeneratedKeys()) {
-                if (rs.next()) {
-                    record.setId(rs.getInt(1));
-                    return record;
+        try (QueryTrace trace = QueryTrace.start("RecordDAO.insertRecords");
+             PreparedStatement pstmt = trace.prepare(conn, sql, Statement.RETURN_GENERATED_KEYS)) {
+            int assigned = 0;
+            for (int i = 0; i < records.size(); i++) {
+                Record record = records.get(i);
+                pstmt.setInt(1, record.getStudentId());
+                pstmt.setInt(2, record.getContractorId());
+                pstmt.setString(3, record.getType().name());
+                pstmt.setString(4, record.getMealType());
+                pstmt.setString(5, record.getItems());
+                pstmt.setBigDecimal(6, record.getCost());
+                pstmt.setDate(7, Date.valueOf(record.getRecordDate()));
+                pstmt.addBatch();
+                
+                if ((i + 1) % BATCH_CHUNK_SIZE == 0 || i == records.size() - 1) {
+                    trace.executeBatch(pstmt);
+                    try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                        while (trace.next(rs)) {
+                            records.get(assigned++).setId(rs.getInt(1));
+                        }
+                    }
                 }
             }
+            
+            if (assigned != records.size()) {
+                throw new Exception("Failed to create records: expected " + records.size() +
+                                    " generated keys, got " + assigned);
+            }
         }
-        throw new Exception("Failed to create record");
+        
+        ledgerDAO.recordInserted(conn, records);
     }
     
     public List<Record> getRecordsByStudentAndType(int studentId, Record.RecordType type) throws Exception {
@@ -48,14 +174,15 @@ public class RecordDAO {
         
         List<Record> records = new ArrayList<>();
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("RecordDAO.getRecordsByStudentAndType");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
             
             pstmt.setInt(1, studentId);
             pstmt.setString(2, type.name());
             
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                while (trace.next(rs)) {
                     records.add(extractRecord(rs));
                 }
             }
@@ -75,13 +202,14 @@ public class RecordDAO {
         
         List<Record> records = new ArrayList<>();
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("RecordDAO.getRecordsByContractor");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
             
             pstmt.setInt(1, contractorId);
             
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                while (trace.next(rs)) {
                     records.add(extractRecord(rs));
                 }
             }
@@ -89,50 +217,254 @@ public class RecordDAO {
         return records;
     }
     
-    public List<Record> getMonthlyBill(int studentId, Record.RecordType type, int year, int month) throws Exception {
+    public RecordPage getRecordsByStudentAndType(int studentId, Record.RecordType type,
+                                                 RecordCursor after, int limit) throws Exception {
+        List<Record> records = new ArrayList<>(limit + 1);
+        streamRecordsByStudentAndType(studentId, type, after, limit + 1, records::add);
+        return toPage(records, limit);
+    }
+    
+    public RecordPage getRecordsByContractor(int contractorId, RecordCursor after, int limit) throws Exception {
+        List<Record> records = new ArrayList<>(limit + 1);
+        streamRecordsByContractor(contractorId, after, limit + 1, records::add);
+        return toPage(records, limit);
+    }
+    
+    public void streamRecordsByStudentAndType(int studentId, Record.RecordType type, RecordCursor after,
+                                              int maxRows, RecordHandler handler) throws Exception {
         String sql = """
             SELECT r.*, u.name as student_name, c.name as contractor_name
             FROM records r
             JOIN users u ON r.student_id = u.id
             JOIN users c ON r.contractor_id = c.id
-            WHERE r.student_id = ? AND r.type = ? 
-            AND YEAR(r.record_date) = ? AND MONTH(r.record_date) = ?
-            ORDER BY r.record_date ASC
-        """;
+            WHERE r.student_id = ? AND r.type = ?
+        """ + (after != null ? KEYSET_PREDICATE : "") + KEYSET_ORDER;
+        
+        try (QueryTrace trace = QueryTrace.start("RecordDAO.streamRecordsByStudentAndType");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setInt(1, studentId);
+            pstmt.setString(2, type.name());
+            int next = 3;
+            if (after != null) {
+                next = bindCursor(pstmt, next, after);
+            }
+            pstmt.setInt(next, maxRows);
+            
+            forEachRow(trace, pstmt, handler);
+        }
+    }
+    
+    public void streamRecordsByContractor(int contractorId, RecordCursor after,
+                                          int maxRows, RecordHandler handler) throws Exception {
+        String sql = contractorListingSql(after != null);
         
+        try (QueryTrace trace = QueryTrace.start("RecordDAO.streamRecordsByContractor");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setInt(1, contractorId);
+            int next = 2;
+            if (after != null) {
+                next = bindCursor(pstmt, next, after);
+            }
+            pstmt.setInt(next, maxRows);
+            
+            forEachRow(trace, pstmt, handler);
+        }
+    }
+    
+    public List<Record> getMonthlyBill(int studentId, Record.RecordType type, int year, int month) throws Exception {
         List<Record> records = new ArrayList<>();
+        streamMonthlyBill(studentId, type, year, month, records::add);
+        return records;
+    }
+    
+    public void streamMonthlyBill(int studentId, Record.RecordType type, int year, int month,
+                                  RecordHandler handler) throws Exception {
+        LocalDate monthStart = LocalDate.of(year, month, 1);
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("RecordDAO.streamMonthlyBill");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, MONTHLY_BILL_SQL)) {
             
             pstmt.setInt(1, studentId);
             pstmt.setString(2, type.name());
-            pstmt.setInt(3, year);
-            pstmt.setInt(4, month);
+            pstmt.setDate(3, Date.valueOf(monthStart));
+            pstmt.setDate(4, Date.valueOf(monthStart.plusMonths(1)));
+            
+            forEachRow(trace, pstmt, handler);
+        }
+    }
+    
+    // Highest change sequence a client can take as its watermark before reading records: every change
+    // at or below it is already visible to the read.
+    public long getChangeWatermark() throws Exception {
+        try (QueryTrace trace = QueryTrace.start("RecordDAO.getChangeWatermark");
+             Connection conn = trace.acquired(dataSource.getConnection())) {
+            return RecordChangeLog.watermark(conn);
+        }
+    }
+    
+    public RecordChangeSet getChangesForContractor(int contractorId, long since, int limit) throws Exception {
+        return getChanges("RecordDAO.getChangesForContractor", "contractor_id", contractorId, since, limit);
+    }
+    
+    public RecordChangeSet getChangesForStudent(int studentId, long since, int limit) throws Exception {
+        return getChanges("RecordDAO.getChangesForStudent", "student_id", studentId, since, limit);
+    }
+    
+    // Inserts and tombstones share the sequence, so both are read up to limit + 1 past since and merged.
+    private RecordChangeSet getChanges(String method, String ownerColumn, int ownerId, long since, int limit)
+            throws Exception {
+        String recordsSql = """
+            SELECT r.*, u.name as student_name, c.name as contractor_name
+            FROM records r
+            JOIN users u ON r.student_id = u.id
+            JOIN users c ON r.contractor_id = c.id
+            WHERE r.%s = ? AND r.change_seq > ? AND r.change_seq <= ?
+            ORDER BY r.change_seq
+            LIMIT ?
+        """.formatted(ownerColumn);
+        String tombstonesSql = """
+            SELECT record_id, type, change_seq FROM record_tombstones
+            WHERE %s = ? AND change_seq > ? AND change_seq <= ?
+            ORDER BY change_seq
+            LIMIT ?
+        """.formatted(ownerColumn);
+        
+        List<Record> records = new ArrayList<>();
+        List<Long> recordSeqs = new ArrayList<>();
+        List<RecordChangeSet.Deletion> deletions = new ArrayList<>();
+        List<Long> deletionSeqs = new ArrayList<>();
+        long ceiling;
+        
+        try (QueryTrace trace = QueryTrace.start(method);
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement recordsStmt = trace.prepare(conn, recordsSql);
+             PreparedStatement tombstonesStmt = trace.prepare(conn, tombstonesSql)) {
+            
+            ceiling = RecordChangeLog.watermark(conn);
+            for (PreparedStatement pstmt : List.of(recordsStmt, tombstonesStmt)) {
+                pstmt.setInt(1, ownerId);
+                pstmt.setLong(2, since);
+                pstmt.setLong(3, ceiling);
+                pstmt.setInt(4, limit + 1);
+            }
             
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
+            try (ResultSet rs = trace.executeQuery(recordsStmt)) {
+                while (trace.next(rs)) {
                     records.add(extractRecord(rs));
+                    recordSeqs.add(rs.getLong("change_seq"));
+                }
+            }
+            try (ResultSet rs = trace.executeQuery(tombstonesStmt)) {
+                while (trace.next(rs)) {
+                    deletions.add(new RecordChangeSet.Deletion(rs.getInt("record_id"),
+                                                               Record.RecordType.valueOf(rs.getString("type"))));
+                    deletionSeqs.add(rs.getLong("change_seq"));
                 }
             }
         }
-        return records;
+        
+        List<Record> upserts = new ArrayList<>();
+        List<RecordChangeSet.Deletion> deletes = new ArrayList<>();
+        int r = 0;
+        int d = 0;
+        long last = since;
+        while (upserts.size() + deletes.size() < limit && (r < records.size() || d < deletions.size())) {
+            if (d == deletions.size() || (r < records.size() && recordSeqs.get(r) < deletionSeqs.get(d))) {
+                last = recordSeqs.get(r);
+                upserts.add(records.get(r++));
+            } else {
+                last = deletionSeqs.get(d);
+                deletes.add(deletions.get(d++));
+            }
+        }
+        boolean hasMore = r < records.size() || d < deletions.size();
+        return new RecordChangeSet(upserts, deletes, hasMore ? last : Math.max(ceiling, since), hasMore);
     }
     
-    public boolean deleteRecord(int recordId, int contractorId) throws Exception {
-        String sql = "DELETE FROM records WHERE id = ? AND contractor_id = ?";
+    // Returns the deleted record, or null when the contractor has no record with that id.
+    public Record deleteRecord(int recordId, int contractorId) throws Exception {
+        String selectSql = "SELECT * FROM records WHERE id = ? AND contractor_id = ? FOR UPDATE";
+        String deleteSql = "DELETE FROM records WHERE id = ?";
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("RecordDAO.deleteRecord");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             RecordChangeLog changes = RecordChangeLog.begin(conn)) {
+            conn.setAutoCommit(false);
             
-            pstmt.setInt(1, recordId);
-            pstmt.setInt(2, contractorId);
-            
-            return pstmt.executeUpdate() > 0;
+            try (PreparedStatement select = trace.prepare(conn, selectSql);
+                 PreparedStatement delete = trace.prepare(conn, deleteSql)) {
+                
+                select.setInt(1, recordId);
+                select.setInt(2, contractorId);
+                
+                Record record;
+                try (ResultSet rs = trace.executeQuery(select)) {
+                    if (!trace.next(rs)) {
+                        conn.rollback();
+                        return null;
+                    }
+                    record = extractRecordRow(rs);
+                }
+                
+                delete.setInt(1, recordId);
+                trace.executeUpdate(delete);
+                ledgerDAO.recordDeleted(conn, record);
+                changes.recordDeleted(conn, record);
+                
+                conn.commit();
+                UploadKeys.recordDeleted(record.getId());
+                return record;
+                
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
     }
     
-    private Record extractRecord(ResultSet rs) throws SQLException {
+    private int bindCursor(PreparedStatement pstmt, int index, RecordCursor cursor) throws SQLException {
+        Date date = Date.valueOf(cursor.recordDate());
+        Timestamp createdAt = Timestamp.valueOf(cursor.createdAt());
+        pstmt.setDate(index++, date);
+        pstmt.setDate(index++, date);
+        pstmt.setTimestamp(index++, createdAt);
+        pstmt.setTimestamp(index++, createdAt);
+        pstmt.setInt(index++, cursor.id());
+        return index;
+    }
+    
+    private void forEachRow(QueryTrace trace, PreparedStatement pstmt, RecordHandler handler) throws Exception {
+        pstmt.setFetchSize(STREAM_FETCH_SIZE);
+        try (ResultSet rs = trace.executeQuery(pstmt)) {
+            while (trace.next(rs)) {
+                handler.handle(extractRecord(rs));
+            }
+        }
+    }
+    
+    private RecordPage toPage(List<Record> records, int limit) {
+        if (records.size() <= limit) {
+            return new RecordPage(records, null);
+        }
+        List<Record> page = records.subList(0, limit);
+        return new RecordPage(page, RecordCursor.of(page.get(limit - 1)).encode());
+    }
+    
+    Record extractRecord(ResultSet rs) throws SQLException {
+        Record record = extractRecordRow(rs);
+        record.setStudentName(rs.getString("student_name"));
+        record.setContractorName(rs.getString("contractor_name"));
+        return record;
+    }
+    
+    private Record extractRecordRow(ResultSet rs) throws SQLException {
         Record record = new Record();
         record.setId(rs.getInt("id"));
         record.setStudentId(rs.getInt("student_id"));
@@ -143,8 +475,6 @@ public class RecordDAO {
         record.setCost(rs.getBigDecimal("cost"));
         record.setRecordDate(rs.getDate("record_date").toLocalDate());
         record.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-        record.setStudentName(rs.getString("student_name"));
-        record.setContractorName(rs.getString("contractor_name"));
         return record;
     }
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.mealscan.dao;
+
+import com.mealscan.model.Record;
+
+@FunctionalInterface
+public interface RecordHandler {
+    void handle(Record record) throws Exception;
+}
@@ -0,0 +1,214 @@
+package com.mealscan.dao;
+
+import com.mealscan.metrics.Metrics;
+import com.mealscan.model.Record;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+// Group commit for single-record uploads. Uploads wait in a bounded queue and one writer thread
+// drains whatever has arrived, up to maxBatch, into a single createRecords transaction, so a rush
+// pays one commit per group instead of one per upload. A submitter's future completes only once
+// its group has committed, so an acknowledged upload is as durable as before. When the queue is
+// full, submit rejects and the caller sheds the request rather than letting the backlog grow.
+// A group that fails on bad data is retried one record at a time so only the bad one fails; any
+// other failure, such as the database being unreachable, fails the whole group at once.
+public final class RecordIngestQueue {
+    
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_BATCH = 256;
+    
+    private record Pending(Record record, String idempotencyKey, CompletableFuture<Record> committed, long queuedAt) {}
+    
+    private static volatile RecordIngestQueue instance;
+    
+    private final BlockingQueue<Pending> queue;
+    private final int capacity;
+    private final int maxBatch;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder groupsCommitted = new LongAdder();
+    private final LongAdder recordsCommitted = new LongAdder();
+    private volatile int largestGroup;
+    private RecordDAO recordDAO;
+    private Thread writer;
+    
+    private RecordIngestQueue(int capacity, int maxBatch) {
+        this(capacity, maxBatch, null);
+    }
+    
+    RecordIngestQueue(int capacity, int maxBatch, RecordDAO recordDAO) {
+        this.capacity = capacity;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.queue = capacity > 0 ? new ArrayBlockingQueue<>(capacity) : null;
+        this.recordDAO = recordDAO;
+    }
+    
+    // A capacity of 0 turns grouping off: every upload commits on its own request thread.
+    public static synchronized void initialize(int capacity, int maxBatch) {
+        RecordIngestQueue previous = instance;
+        instance = new RecordIngestQueue(capacity, maxBatch);
+        if (previous != null) {
+            previous.stop();
+        }
+        System.out.println(capacity > 0
+            ? "Record ingest queue started with capacity " + capacity + ", groups of up to " + maxBatch
+            : "Record ingest queue disabled, uploads commit individually");
+    }
+    
+    // idempotencyKey may be null; when set it is stored with the record in the same transaction.
+    // The future completes with null when that key was already stored, and nothing was inserted.
+    public static CompletableFuture<Record> submit(Record record, String idempotencyKey) throws RejectedExecutionException {
+        return get().enqueue(record, idempotencyKey);
+    }
+    
+    public static Map<String, Object> snapshot() {
+        RecordIngestQueue current = get();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("queueDepth", current.queue != null ? current.queue.size() : 0);
+        snapshot.put("queueCapacity", current.capacity);
+        snapshot.put("groupsCommitted", current.groupsCommitted.sum());
+        snapshot.put("recordsCommitted", current.recordsCommitted.sum());
+        snapshot.put("largestGroup", current.largestGroup);
+        snapshot.put("rejected", current.rejected.sum());
+        return snapshot;
+    }
+    
+    private static RecordIngestQueue get() {
+        RecordIngestQueue current = instance;
+        if (current == null) {
+            synchronized (RecordIngestQueue.class) {
+                if (instance == null) {
+                    initialize(DEFAULT_CAPACITY, DEFAULT_MAX_BATCH);
+                }
+                current = instance;
+            }
+        }
+        return current;
+    }
+    
+    CompletableFuture<Record> enqueue(Record record, String idempotencyKey) {
+        if (queue == null) {
+            return commitDirectly(record, idempotencyKey);
+        }
+        startWriter();
+        CompletableFuture<Record> committed = new CompletableFuture<>();
+        if (!queue.offer(new Pending(record, idempotencyKey, committed, System.nanoTime()))) {
+            rejected.increment();
+            throw new RejectedExecutionException("Record ingest queue is full");
+        }
+        return committed;
+    }
+    
+    private CompletableFuture<Record> commitDirectly(Record record, String idempotencyKey) {
+        try {
+            List<Record> inserted = dao().createRecords(List.of(record), Collections.singletonList(idempotencyKey));
+            return CompletableFuture.completedFuture(inserted.isEmpty() ? null : record);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    // The DAO needs the data source, which is set up after initialize runs at startup.
+    private synchronized RecordDAO dao() {
+        if (recordDAO == null) {
+            recordDAO = new RecordDAO();
+        }
+        return recordDAO;
+    }
+    
+    private synchronized void startWriter() {
+        if (writer != null) {
+            return;
+        }
+        dao();
+        writer = new Thread(this::drain, "record-ingest");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    synchronized void stop() {
+        if (writer != null) {
+            writer.interrupt();
+        }
+    }
+    
+    private void drain() {
+        List<Pending> group = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(group, maxBatch - 1);
+            commit(group);
+            group.clear();
+        }
+        // Replaced by a new initialize; whatever is still queued goes through one by one.
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            commit(List.of(pending));
+        }
+    }
+    
+    private void commit(List<Pending> group) {
+        List<Record> records = new ArrayList<>(group.size());
+        List<String> keys = new ArrayList<>(group.size());
+        for (Pending pending : group) {
+            records.add(pending.record());
+            keys.add(pending.idempotencyKey());
+        }
+        
+        long start = System.nanoTime();
+        Set<Record> inserted = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            inserted.addAll(recordDAO.createRecords(records, keys));
+        } catch (Exception e) {
+            if (group.size() == 1 || !isDataError(e)) {
+                for (Pending pending : group) {
+                    pending.committed().completeExceptionally(e);
+                }
+                return;
+            }
+            // One bad record rolls back the whole group; retry each alone so only it fails.
+            for (Pending pending : group) {
+                commit(List.of(pending));
+            }
+            return;
+        }
+        long end = System.nanoTime();
+        Metrics.ingestCommit().record(end - start);
+        groupsCommitted.increment();
+        recordsCommitted.add(inserted.size());
+        if (group.size() > largestGroup) {
+            largestGroup = group.size();
+        }
+        for (Pending pending : group) {
+            Metrics.ingestAck().record(end - pending.queuedAt());
+            pending.committed().complete(inserted.contains(pending.record()) ? pending.record() : null);
+        }
+    }
+    
+    // SQLState classes 22 (data exception) and 23 (integrity constraint violation) come from a
+    // record the database refused, not from the database being unavailable.
+    private static boolean isDataError(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql && sql.getSQLState() != null &&
+                    (sql.getSQLState().startsWith("22") || sql.getSQLState().startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
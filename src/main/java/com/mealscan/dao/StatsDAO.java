@@ -0,0 +1,103 @@
+package com.mealscan.dao;
+
+import com.mealscan.config.DatabaseInitializer;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class StatsDAO {
+    
+    private static final int RECENT_ACTIVITY_SIZE = 5;
+    
+    public record RecentActivity(String studentName, String mealType, BigDecimal cost, String date) {}
+    
+    public record ContractorStats(int totalUsers, int totalStudents, int studentCount, int messContractorCount,
+                                  int canteenContractorCount, int totalRecords, int todayRecords,
+                                  BigDecimal monthlyEarnings, BigDecimal totalEarnings, BigDecimal avgMealCost,
+                                  List<RecentActivity> recentActivity) {}
+    
+    // All-time and this month's figures come from the contractor's monthly ledger, one row per
+    // month with records; only today's records are counted from the table, as one day of the
+    // contractor/date index.
+    private static final String CONTRACTOR_TOTALS_SQL = """
+        SELECT COALESCE(SUM(record_count), 0) AS total_records,
+               COALESCE(SUM(total), 0) AS total_earnings,
+               COALESCE(SUM(CASE WHEN bill_year = ? AND bill_month = ? THEN total END), 0) AS monthly_earnings
+        FROM contractor_monthly_totals
+        WHERE contractor_id = ?
+    """;
+    
+    static final String TODAY_RECORDS_SQL = """
+        SELECT COUNT(*) FROM records
+        WHERE contractor_id = ? AND record_date >= ? AND record_date < ?
+    """;
+    
+    private final DataSource dataSource;
+    private final UserDAO userDAO;
+    private final RecordDAO recordDAO;
+    
+    public StatsDAO() {
+        this(DatabaseInitializer.getDataSource());
+    }
+    
+    public StatsDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.userDAO = new UserDAO(dataSource);
+        this.recordDAO = new RecordDAO(dataSource);
+    }
+    
+    public ContractorStats getContractorStats(int contractorId, LocalDate today) throws Exception {
+        Map<String, Object> userStats = userDAO.getUserStats();
+        int studentCount = (int) userStats.getOrDefault("studentCount", 0);
+        
+        LocalDate monthStart = today.withDayOfMonth(1);
+        int totalRecords;
+        int todayRecords;
+        BigDecimal monthlyEarnings;
+        BigDecimal totalEarnings;
+        
+        try (QueryTrace trace = QueryTrace.start("StatsDAO.getContractorStats");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement totals = trace.prepare(conn, CONTRACTOR_TOTALS_SQL);
+             PreparedStatement todayCount = trace.prepare(conn, TODAY_RECORDS_SQL)) {
+            
+            totals.setInt(1, monthStart.getYear());
+            totals.setInt(2, monthStart.getMonthValue());
+            totals.setInt(3, contractorId);
+            
+            try (ResultSet rs = trace.executeQuery(totals)) {
+                trace.next(rs);
+                totalRecords = (int) rs.getLong("total_records");
+                monthlyEarnings = rs.getBigDecimal("monthly_earnings");
+                totalEarnings = rs.getBigDecimal("total_earnings");
+            }
+            
+            todayCount.setInt(1, contractorId);
+            todayCount.setDate(2, Date.valueOf(today));
+            todayCount.setDate(3, Date.valueOf(today.plusDays(1)));
+            
+            try (ResultSet rs = trace.executeQuery(todayCount)) {
+                trace.next(rs);
+                todayRecords = rs.getInt(1);
+            }
+        }
+        BigDecimal avgMealCost = totalRecords == 0 ? BigDecimal.ZERO
+            : totalEarnings.divide(BigDecimal.valueOf(totalRecords), 2, RoundingMode.HALF_UP);
+        
+        List<RecentActivity> recentActivity = new ArrayList<>(RECENT_ACTIVITY_SIZE);
+        recordDAO.streamRecordsByContractor(contractorId, null, RECENT_ACTIVITY_SIZE, r -> recentActivity.add(
+            new RecentActivity(r.getStudentName(), r.getMealType(), r.getCost(), r.getRecordDate().toString())));
+        
+        return new ContractorStats((int) userStats.getOrDefault("totalUsers", 0), studentCount, studentCount,
+                                   (int) userStats.getOrDefault("mess_contractorCount", 0),
+                                   (int) userStats.getOrDefault("canteen_contractorCount", 0),
+                                   totalRecords, todayRecords, monthlyEarnings, totalEarnings, avgMealCost,
+                                   List.copyOf(recentActivity));
+    }
+}
@@ -0,0 +1,407 @@
+package com.mealscan.dao;
+
+import com.mealscan.config.DatabaseInitializer;
+import com.mealscan.model.Record;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Idempotency-Key support for single uploads, so a tablet retrying on flaky Wi-Fi cannot bill a
+// meal twice. Keys are scoped to the contractor. The upload_keys table is the record of truth: a
+// key row commits in the same transaction as its record, and its primary key rejects a second
+// use. In front of it sits a bounded map of the keys seen in the last window, holding each
+// upload's pending or committed result, so a retry is answered from memory with no database
+// round trip, and a retry that arrives while the first attempt is still queued waits for it
+// instead of racing it. A key that has left the map, as after a restart, is found by the group
+// commit's own lookup and left out of the insert; the original record is then read back off the
+// writer thread. Deleting a record drops its key from the map, so a retry for it is refused the
+// same way whether or not the key was still in memory.
+public final class UploadKeys {
+    
+    public static final int DEFAULT_CAPACITY = 100_000;
+    public static final Duration DEFAULT_WINDOW = Duration.ofHours(24);
+    public static final int MAX_KEY_LENGTH = 255;
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final String DUPLICATE_KEY_STATE = "23505";
+    
+    // The record as first committed, and whether this request was answered as a replay.
+    public record Upload(Record record, boolean replayed) {}
+    
+    // The key was already used for a different record, or for one that has since been deleted.
+    public static final class KeyConflictException extends Exception {
+        KeyConflictException(String message) {
+            super(message);
+        }
+    }
+    
+    private record Key(int contractorId, String value) {}
+    
+    private record Entry(Key key, Record submitted, CompletableFuture<Upload> result, long expiresAt) {}
+    
+    private static volatile UploadKeys instance;
+    
+    private final int capacity;
+    private final Duration window;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Integer, Key> keysByRecord = new ConcurrentHashMap<>();
+    // Entries in the order they were added, which with a fixed window is also expiry order. It may
+    // still hold entries already dropped from the map; bounding it bounds the map as well.
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger ordered = new AtomicInteger();
+    private final AtomicLong lastPurge = new AtomicLong(System.nanoTime());
+    private final LongAdder memoryReplays = new LongAdder();
+    private final LongAdder storedReplays = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // Stored-key lookups and purges, kept off the ingest writer and the request threads.
+    private final ThreadPoolExecutor background;
+    private RecordDAO recordDAO;
+    
+    private UploadKeys(int capacity, Duration window) {
+        this.capacity = Math.max(1, capacity);
+        this.window = window;
+        this.background = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1024), task -> {
+            Thread thread = new Thread(task, "upload-keys");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        background.allowCoreThreadTimeOut(true);
+    }
+    
+    public static synchronized void initialize(int capacity, Duration window) {
+        instance = new UploadKeys(capacity, window);
+    }
+    
+    public static boolean isValidKey(String key) {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x21 || c > 0x7e) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Uploads a validated record through the ingest queue. With a key, a repeat of an earlier
+    // upload completes with the first one's record instead of creating another; a repeat with a
+    // different record fails with KeyConflictException.
+    public static CompletableFuture<Upload> submit(Record record, String idempotencyKey) throws RejectedExecutionException {
+        if (idempotencyKey == null) {
+            return RecordIngestQueue.submit(record, null).thenApply(saved -> new Upload(saved, false));
+        }
+        return get().claim(record, idempotencyKey);
+    }
+    
+    // Whether a retry under this key would be answered from memory.
+    public static boolean isRecent(int contractorId, String idempotencyKey) {
+        Entry entry = get().entries.get(new Key(contractorId, idempotencyKey));
+        return entry != null && entry.expiresAt() - System.nanoTime() >= 0;
+    }
+    
+    public static Map<String, Object> snapshot() {
+        UploadKeys current = get();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("size", current.entries.size());
+        snapshot.put("capacity", current.capacity);
+        snapshot.put("memoryReplays", current.memoryReplays.sum());
+        snapshot.put("storedReplays", current.storedReplays.sum());
+        snapshot.put("conflicts", current.conflicts.sum());
+        snapshot.put("evictions", current.evictions.sum());
+        return snapshot;
+    }
+    
+    // Runs inside RecordDAO.createRecords' transaction, before the insert: the positions of the
+    // records whose key is already stored, in one lookup on the primary key.
+    static Set<Integer> findStored(Connection conn, List<Record> records, List<String> keys) throws SQLException {
+        Map<Key, Integer> positions = new HashMap<>();
+        StringJoiner rows = new StringJoiner(", ");
+        for (int i = 0; i < records.size(); i++) {
+            if (keys.get(i) != null) {
+                positions.put(new Key(records.get(i).getContractorId(), keys.get(i)), i);
+                rows.add("(?, ?)");
+            }
+        }
+        Set<Integer> stored = new HashSet<>();
+        if (positions.isEmpty()) {
+            return stored;
+        }
+        String sql = "SELECT contractor_id, idempotency_key FROM upload_keys " +
+                     "WHERE (contractor_id, idempotency_key) IN (" + rows + ")";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (Key key : positions.keySet()) {
+                pstmt.setInt(index++, key.contractorId());
+                pstmt.setString(index++, key.value());
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    stored.add(positions.get(new Key(rs.getInt("contractor_id"), rs.getString("idempotency_key"))));
+                }
+            }
+        }
+        return stored;
+    }
+    
+    // Runs inside RecordDAO.createRecords' transaction, after the records have their ids.
+    static void insert(Connection conn, List<Record> records, List<String> keys) throws SQLException {
+        String sql = "INSERT INTO upload_keys (contractor_id, idempotency_key, record_id) VALUES (?, ?, ?)";
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            boolean any = false;
+            for (int i = 0; i < records.size(); i++) {
+                if (keys.get(i) == null) {
+                    continue;
+                }
+                pstmt.setInt(1, records.get(i).getContractorId());
+                pstmt.setString(2, keys.get(i));
+                pstmt.setInt(3, records.get(i).getId());
+                pstmt.addBatch();
+                any = true;
+            }
+            if (any) {
+                pstmt.executeBatch();
+            }
+        }
+    }
+    
+    // After the delete commits: a retry for the record must not be answered from memory.
+    static void recordDeleted(int recordId) {
+        UploadKeys current = instance;
+        if (current == null) {
+            return;
+        }
+        Key key = current.keysByRecord.remove(recordId);
+        if (key != null) {
+            current.entries.computeIfPresent(key, (k, entry) -> recordId(entry) == recordId ? null : entry);
+        }
+    }
+    
+    // The user's records went with it, as contractor or as student.
+    static void userDeleted(int userId) {
+        UploadKeys current = instance;
+        if (current == null) {
+            return;
+        }
+        current.entries.values().removeIf(entry -> entry.key().contractorId() == userId ||
+                                                   entry.submitted().getStudentId() == userId);
+        current.keysByRecord.values().removeIf(key -> !current.entries.containsKey(key));
+    }
+    
+    private static UploadKeys get() {
+        UploadKeys current = instance;
+        if (current == null) {
+            synchronized (UploadKeys.class) {
+                if (instance == null) {
+                    instance = new UploadKeys(DEFAULT_CAPACITY, DEFAULT_WINDOW);
+                }
+                current = instance;
+            }
+        }
+        return current;
+    }
+    
+    private CompletableFuture<Upload> claim(Record record, String idempotencyKey) {
+        Key key = new Key(record.getContractorId(), idempotencyKey);
+        long now = System.nanoTime();
+        Entry fresh = new Entry(key, record, new CompletableFuture<>(), now + window.toNanos());
+        
+        Entry existing;
+        while ((existing = entries.putIfAbsent(key, fresh)) != null) {
+            if (existing.expiresAt() - now >= 0) {
+                return replay(existing, record);
+            }
+            entries.remove(key, existing);
+        }
+        order.add(fresh);
+        ordered.incrementAndGet();
+        evict(now);
+        
+        try {
+            RecordIngestQueue.submit(record, idempotencyKey).whenComplete((saved, failure) -> {
+                if (failure == null && saved != null) {
+                    keysByRecord.put(saved.getId(), key);
+                    fresh.result().complete(new Upload(saved, false));
+                } else if (failure == null || isDuplicateKey(failure)) {
+                    // The key was already stored. This runs on the ingest writer, so read it elsewhere.
+                    lookUpStored(fresh);
+                } else {
+                    // Nothing was stored, so a retry with this key should go through.
+                    entries.remove(key, fresh);
+                    fresh.result().completeExceptionally(failure);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entries.remove(key, fresh);
+            throw e;
+        }
+        return fresh.result();
+    }
+    
+    private CompletableFuture<Upload> replay(Entry existing, Record record) {
+        if (!sameRecord(existing.submitted(), record)) {
+            conflicts.increment();
+            return CompletableFuture.failedFuture(
+                new KeyConflictException("Idempotency-Key was already used for a different record"));
+        }
+        memoryReplays.increment();
+        return existing.result().thenApply(first -> new Upload(first.record(), true));
+    }
+    
+    private void lookUpStored(Entry entry) {
+        try {
+            background.execute(() -> completeFromStore(entry));
+        } catch (RejectedExecutionException e) {
+            entries.remove(entry.key(), entry);
+            entry.result().completeExceptionally(e);
+        }
+    }
+    
+    // The key was stored before this process saw it: before a restart, or after it left the map.
+    // One indexed lookup, and only for such late retries.
+    private void completeFromStore(Entry entry) {
+        try {
+            Record original = findRecord(entry.key());
+            if (original == null) {
+                throw new KeyConflictException("The upload with this Idempotency-Key was already processed " +
+                                               "and its record has since been deleted");
+            }
+            if (!sameRecord(original, entry.submitted())) {
+                throw new KeyConflictException("Idempotency-Key was already used for a different record");
+            }
+            storedReplays.increment();
+            keysByRecord.put(original.getId(), entry.key());
+            entry.result().complete(new Upload(original, true));
+        } catch (Exception e) {
+            if (e instanceof KeyConflictException) {
+                conflicts.increment();
+            }
+            entries.remove(entry.key(), entry);
+            entry.result().completeExceptionally(e);
+        }
+    }
+    
+    private Record findRecord(Key key) throws Exception {
+        String sql = """
+            SELECT r.*, u.name as student_name, c.name as contractor_name
+            FROM upload_keys k
+            JOIN records r ON r.id = k.record_id
+            JOIN users u ON r.student_id = u.id
+            JOIN users c ON r.contractor_id = c.id
+            WHERE k.contractor_id = ? AND k.idempotency_key = ?
+        """;
+        
+        try (QueryTrace trace = QueryTrace.start("UploadKeys.findRecord");
+             Connection conn = trace.acquired(dataSource().getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setInt(1, key.contractorId());
+            pstmt.setString(2, key.value());
+            
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                return trace.next(rs) ? recordDAO().extractRecord(rs) : null;
+            }
+        }
+    }
+    
+    private void evict(long now) {
+        Entry head;
+        while ((head = order.peek()) != null && (ordered.get() > capacity || head.expiresAt() - now < 0)) {
+            if (order.remove(head)) {
+                ordered.decrementAndGet();
+                keysByRecord.remove(recordId(head), head.key());
+                if (entries.remove(head.key(), head)) {
+                    evictions.increment();
+                }
+            }
+        }
+        
+        long last = lastPurge.get();
+        if (now - last > PURGE_INTERVAL_NANOS && lastPurge.compareAndSet(last, now)) {
+            try {
+                background.execute(this::purge);
+            } catch (RejectedExecutionException e) {
+                // Busy with lookups; the next interval purges instead.
+            }
+        }
+    }
+    
+    // Keys older than the window are no longer honoured in memory; drop them from the table too.
+    private void purge() {
+        String sql = "DELETE FROM upload_keys WHERE created_at < ?";
+        
+        try (QueryTrace trace = QueryTrace.start("UploadKeys.purge");
+             Connection conn = trace.acquired(dataSource().getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now().minus(window)));
+            trace.executeUpdate(pstmt);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // The id of the record the entry's upload resolved to, or 0 while it is pending or failed.
+    private static int recordId(Entry entry) {
+        CompletableFuture<Upload> result = entry.result();
+        return result.isDone() && !result.isCompletedExceptionally() ? result.join().record().getId() : 0;
+    }
+    
+    private static boolean sameRecord(Record a, Record b) {
+        return a.getStudentId() == b.getStudentId()
+            && a.getType() == b.getType()
+            && Objects.equals(a.getMealType(), b.getMealType())
+            && Objects.equals(a.getItems(), b.getItems())
+            && a.getCost().compareTo(b.getCost()) == 0
+            && Objects.equals(a.getRecordDate(), b.getRecordDate());
+    }
+    
+    private static boolean isDuplicateKey(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql && DUPLICATE_KEY_STATE.equals(sql.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // The data source is set up after initialize runs at startup.
+    private DataSource dataSource() {
+        return DatabaseInitializer.getDataSource();
+    }
+    
+    private synchronized RecordDAO recordDAO() {
+        if (recordDAO == null) {
+            recordDAO = new RecordDAO();
+        }
+        return recordDAO;
+    }
+}
@@ -0,0 +1,128 @@
+package com.mealscan.dao;
+
+import com.mealscan.model.User;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Read-through cache of users by id and by email, shared by every UserDAO on the same DataSource.
+// Writes through UserDAO invalidate it; the TTL bounds staleness from other processes sharing the
+// H2 file (the CLI tools), which this cache cannot see.
+public class UserCache {
+    
+    private static final int DEFAULT_CAPACITY = 1_000;
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+    private static final Map<DataSource, UserCache> SHARED = new ConcurrentHashMap<>();
+    
+    private record Entry(User user, long expiresAt) {}
+    
+    private final long ttlNanos;
+    private final Map<Integer, Entry> byId;
+    private final Map<String, Integer> idsByEmail = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private long generation;
+    
+    public UserCache(int capacity, Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+        this.byId = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() > capacity) {
+                    idsByEmail.remove(eldest.getValue().user().getEmail());
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    static UserCache forDataSource(DataSource dataSource) {
+        return SHARED.computeIfAbsent(dataSource, ds -> new UserCache(DEFAULT_CAPACITY, DEFAULT_TTL));
+    }
+    
+    synchronized User getById(int id) {
+        return hit(byId.get(id));
+    }
+    
+    synchronized User getByEmail(String email) {
+        Integer id = idsByEmail.get(email);
+        return hit(id == null ? null : byId.get(id));
+    }
+    
+    // Read before querying the database and hand back to put(); a load that raced with an
+    // invalidation is dropped rather than caching a row the writer has already replaced.
+    synchronized long generation() {
+        return generation;
+    }
+    
+    synchronized void put(User user, long loadedAt) {
+        if (loadedAt != generation) {
+            return;
+        }
+        Entry previous = byId.put(user.getId(), new Entry(copy(user), System.nanoTime() + ttlNanos));
+        if (previous != null) {
+            idsByEmail.remove(previous.user().getEmail());
+        }
+        idsByEmail.put(user.getEmail(), user.getId());
+    }
+    
+    synchronized void invalidate(int id) {
+        generation++;
+        invalidations.increment();
+        Entry removed = byId.remove(id);
+        if (removed != null) {
+            idsByEmail.remove(removed.user().getEmail());
+        }
+    }
+    
+    public synchronized void clear() {
+        generation++;
+        byId.clear();
+        idsByEmail.clear();
+    }
+    
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        stats.put("size", byId.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.sum());
+        stats.put("hitRatio", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+    
+    private User hit(Entry entry) {
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAt() - System.nanoTime() < 0) {
+            byId.remove(entry.user().getId());
+            idsByEmail.remove(entry.user().getEmail());
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy(entry.user());
+    }
+    
+    // Callers are free to mutate what they get back, so the cache never shares its instances.
+    private static User copy(User user) {
+        User copy = new User(user.getId(), user.getEmail(), user.getName(), user.getRole());
+        copy.setPassword(user.getPassword());
+        copy.setCreatedAt(user.getCreatedAt());
+        return copy;
+    }
+}
@@ -1,34 +1,59 @@
 package com.mealscan.dao;
 
+import com.mealscan.auth.PasswordHasher;
 import com.mealscan.config.DatabaseInitializer;
 import com.mealscan.model.User;
-import org.mindrot.jbcrypt.BCrypt;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class UserDAO {
     
+    private final DataSource dataSource;
+    private final BillLedgerDAO ledgerDAO;
+    private final UserCache cache;
+    private final MenuCache menuCache;
+    
+    public UserDAO() {
+        this(DatabaseInitializer.getDataSource());
+    }
+    
+    public UserDAO(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.ledgerDAO = new BillLedgerDAO(dataSource);
+        this.cache = UserCache.forDataSource(dataSource);
+        this.menuCache = MenuCache.forDataSource(dataSource);
+    }
+    
+    public UserCache getCache() {
+        return cache;
+    }
+    
     public User createUser(String email, String password, String name, User.UserRole role) throws Exception {
         String sql = "INSERT INTO users (email, password, name, role) VALUES (?, ?, ?, ?)";
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (QueryTrace trace = QueryTrace.startRedacted("UserDAO.createUser");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql, Statement.RETURN_GENERATED_KEYS)) {
             
-            String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt());
+            String hashedPassword = PasswordHasher.hash(password);
             
             pstmt.setString(1, email);
             pstmt.setString(2, hashedPassword);
             pstmt.setString(3, name);
             pstmt.setString(4, role.name());
             
-            pstmt.executeUpdate();
+            trace.executeUpdate(pstmt);
             
             try (ResultSet rs = pstmt.getGeneratedKeys()) {
-                if (rs.next()) {
+                if (trace.next(rs)) {
                     User user = new User();
                     user.setId(rs.getInt(1));
                     user.setEmail(email);
@@ -42,16 +67,25 @@ public class UserDAO {
     }
     
     public User findByEmail(String email) throws Exception {
+        User cached = cache.getByEmail(email);
+        if (cached != null) {
+            return cached;
+        }
+        
         String sql = "SELECT * FROM users WHERE email = ?";
+        long generation = cache.generation();
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.findByEmail");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
             
             pstmt.setString(1, email);
             
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return extractUser(rs);
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                if (trace.next(rs)) {
+                    User user = extractUser(rs);
+                    cache.put(user, generation);
+                    return user;
                 }
             }
         }
@@ -59,16 +93,25 @@ public class UserDAO {
     }
     
     public User findById(int id) throws Exception {
+        User cached = cache.getById(id);
+        if (cached != null) {
+            return cached;
+        }
+        
         String sql = "SELECT * FROM users WHERE id = ?";
+        long generation = cache.generation();
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.findById");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
             
             pstmt.setInt(1, id);
             
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return extractUser(rs);
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                if (trace.next(rs)) {
+                    User user = extractUser(rs);
+                    cache.put(user, generation);
+                    return user;
                 }
             }
         }
@@ -78,21 +121,49 @@ public class UserDAO {
     public User authenticate(String email, String password) throws Exception {
         User user = findByEmail(email);
         
-        if (user != null && BCrypt.checkpw(password, user.getPassword())) {
-            return user;
+        if (user == null || !PasswordHasher.verify(password, user.getPassword())) {
+            return null;
+        }
+        if (PasswordHasher.needsRehash(user.getPassword())) {
+            upgradeHash(user, password);
+        }
+        return user;
+    }
+    
+    // The configured cost changed since this hash was written; the plaintext is only in hand at
+    // login, so rewrite it now. Guarded on the old hash so a concurrent reset is never overwritten.
+    private void upgradeHash(User user, String password) {
+        String sql = "UPDATE users SET password = ? WHERE id = ? AND password = ?";
+        String upgraded = PasswordHasher.hash(password);
+        
+        try (QueryTrace trace = QueryTrace.startRedacted("UserDAO.upgradeHash");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setString(1, upgraded);
+            pstmt.setInt(2, user.getId());
+            pstmt.setString(3, user.getPassword());
+            
+            if (trace.executeUpdate(pstmt) > 0) {
+                user.setPassword(upgraded);
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to upgrade password hash for user " + user.getId() + ": " + e.getMessage());
+        } finally {
+            cache.invalidate(user.getId());
         }
-        return null;
     }
     
     public List<User> getAllStudents() throws Exception {
         String sql = "SELECT * FROM users WHERE role = 'STUDENT' ORDER BY name";
         List<User> students = new ArrayList<>();
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.getAllStudents");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql);
+             ResultSet rs = trace.executeQuery(pstmt)) {
             
-            while (rs.next()) {
+            while (trace.next(rs)) {
                 students.add(extractUser(rs));
             }
         }
@@ -103,11 +174,12 @@ public class UserDAO {
         String sql = "SELECT * FROM users ORDER BY role, name";
         List<User> users = new ArrayList<>();
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.getAllUsers");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql);
+             ResultSet rs = trace.executeQuery(pstmt)) {
             
-            while (rs.next()) {
+            while (trace.next(rs)) {
                 users.add(extractUser(rs));
             }
         }
@@ -118,13 +190,14 @@ public class UserDAO {
         String sql = "SELECT * FROM users WHERE role = ? ORDER BY name";
         List<User> users = new ArrayList<>();
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.getUsersByRole");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
             
             pstmt.setString(1, role.name());
             
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                while (trace.next(rs)) {
                     users.add(extractUser(rs));
                 }
             }
@@ -132,16 +205,39 @@ public class UserDAO {
         return users;
     }
     
+    public Set<Integer> findStudentIds(Collection<Integer> ids) throws Exception {
+        String sql = "SELECT id FROM users WHERE role = 'STUDENT' AND id = ANY(?)";
+        Set<Integer> found = new HashSet<>();
+        if (ids.isEmpty()) {
+            return found;
+        }
+        
+        try (QueryTrace trace = QueryTrace.start("UserDAO.findStudentIds");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
+            
+            pstmt.setArray(1, conn.createArrayOf("INTEGER", ids.toArray()));
+            
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                while (trace.next(rs)) {
+                    found.add(rs.getInt(1));
+                }
+            }
+        }
+        return found;
+    }
+    
     public boolean emailExists(String email) throws Exception {
         String sql = "SELECT COUNT(*) FROM users WHERE email = ?";
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.emailExists");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
             
             pstmt.setString(1, email);
             
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                if (trace.next(rs)) {
                     return rs.getInt(1) > 0;
                 }
             }
@@ -152,12 +248,33 @@ public class UserDAO {
     public boolean deleteUser(int userId) throws Exception {
         String sql = "DELETE FROM users WHERE id = ?";
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.deleteUser");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             RecordChangeLog changes = RecordChangeLog.begin(conn)) {
+            conn.setAutoCommit(false);
             
-            pstmt.setInt(1, userId);
-            int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
+            try (PreparedStatement pstmt = trace.prepare(conn, sql)) {
+                // Records cascade with the user, so take them off the ledgers and leave tombstones
+                // for them first.
+                ledgerDAO.userRecordsDeleted(conn, userId);
+                changes.userRecordsDeleted(conn, userId);
+                
+                pstmt.setInt(1, userId);
+                int affectedRows = trace.executeUpdate(pstmt);
+                
+                conn.commit();
+                return affectedRows > 0;
+                
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+                cache.invalidate(userId);
+                // A contractor's menu slots cascade with it, and the user's records with them.
+                menuCache.invalidate(userId);
+                UploadKeys.userDeleted(userId);
+            }
         }
     }
     
@@ -165,18 +282,23 @@ public class UserDAO {
         String deleteRecordsSql = "DELETE FROM records WHERE student_id = ? OR contractor_id = ?";
         String deleteUserSql = "DELETE FROM users WHERE id = ?";
         
-        try (Connection conn = DatabaseInitializer.getConnection()) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.deleteUserWithRecords");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             RecordChangeLog changes = RecordChangeLog.begin(conn)) {
             conn.setAutoCommit(false);
             
-            try (PreparedStatement pstmt1 = conn.prepareStatement(deleteRecordsSql);
-                 PreparedStatement pstmt2 = conn.prepareStatement(deleteUserSql)) {
+            try (PreparedStatement pstmt1 = trace.prepare(conn, deleteRecordsSql);
+                 PreparedStatement pstmt2 = trace.prepare(conn, deleteUserSql)) {
+                
+                ledgerDAO.userRecordsDeleted(conn, userId);
+                changes.userRecordsDeleted(conn, userId);
                 
                 pstmt1.setInt(1, userId);
                 pstmt1.setInt(2, userId);
-                pstmt1.executeUpdate();
+                trace.executeUpdate(pstmt1);
                 
                 pstmt2.setInt(1, userId);
-                int affectedRows = pstmt2.executeUpdate();
+                int affectedRows = trace.executeUpdate(pstmt2);
                 
                 conn.commit();
                 return affectedRows > 0;
@@ -186,6 +308,10 @@ public class UserDAO {
                 throw e;
             } finally {
                 conn.setAutoCommit(true);
+                cache.invalidate(userId);
+                // A contractor's menu slots cascade with it, and the user's records with them.
+                menuCache.invalidate(userId);
+                UploadKeys.userDeleted(userId);
             }
         }
     }
@@ -193,44 +319,56 @@ public class UserDAO {
     public boolean updateUser(int userId, String name, String email) throws Exception {
         String sql = "UPDATE users SET name = ?, email = ? WHERE id = ?";
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.updateUser");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
             
             pstmt.setString(1, name);
             pstmt.setString(2, email);
             pstmt.setInt(3, userId);
             
-            int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
+            try {
+                return trace.executeUpdate(pstmt) > 0;
+            } finally {
+                cache.invalidate(userId);
+            }
         }
     }
     
     public boolean changeUserRole(int userId, User.UserRole newRole) throws Exception {
         String sql = "UPDATE users SET role = ? WHERE id = ?";
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.changeUserRole");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
             
             pstmt.setString(1, newRole.name());
             pstmt.setInt(2, userId);
             
-            int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
+            try {
+                return trace.executeUpdate(pstmt) > 0;
+            } finally {
+                cache.invalidate(userId);
+            }
         }
     }
     
     public boolean resetPassword(int userId, String newPassword) throws Exception {
         String sql = "UPDATE users SET password = ? WHERE id = ?";
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.startRedacted("UserDAO.resetPassword");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
             
-            String hashedPassword = BCrypt.hashpw(newPassword, BCrypt.gensalt());
+            String hashedPassword = PasswordHasher.hash(newPassword);
             pstmt.setString(1, hashedPassword);
             pstmt.setInt(2, userId);
             
-            int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
+            try {
+                return trace.executeUpdate(pstmt) > 0;
+            } finally {
+                cache.invalidate(userId);
+            }
         }
     }
     
@@ -240,7 +378,7 @@ public class UserDAO {
             throw new Exception("User not found");
         }
         
-        if (!BCrypt.checkpw(oldPassword, user.getPassword())) {
+        if (!PasswordHasher.verify(oldPassword, user.getPassword())) {
             throw new Exception("Current password is incorrect");
         }
         
@@ -251,15 +389,16 @@ public class UserDAO {
         String sql = "SELECT * FROM users WHERE name LIKE ? OR email LIKE ? ORDER BY name";
         List<User> users = new ArrayList<>();
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.searchUsers");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
             
             String searchPattern = "%" + searchTerm + "%";
             pstmt.setString(1, searchPattern);
             pstmt.setString(2, searchPattern);
             
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                while (trace.next(rs)) {
                     users.add(extractUser(rs));
                 }
             }
@@ -271,12 +410,13 @@ public class UserDAO {
         String sql = "SELECT role, COUNT(*) as count FROM users GROUP BY role";
         Map<String, Object> stats = new HashMap<>();
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.getUserStats");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql);
+             ResultSet rs = trace.executeQuery(pstmt)) {
             
             int totalUsers = 0;
-            while (rs.next()) {
+            while (trace.next(rs)) {
                 String role = rs.getString("role");
                 int count = rs.getInt("count");
                 stats.put(role.toLowerCase() + "Count", count);
@@ -290,14 +430,15 @@ public class UserDAO {
     public boolean userHasRecords(int userId) throws Exception {
         String sql = "SELECT COUNT(*) FROM records WHERE student_id = ? OR contractor_id = ?";
         
-        try (Connection conn = DatabaseInitializer.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.userHasRecords");
+             Connection conn = trace.acquired(dataSource.getConnection());
+             PreparedStatement pstmt = trace.prepare(conn, sql)) {
             
             pstmt.setInt(1, userId);
             pstmt.setInt(2, userId);
             
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
+            try (ResultSet rs = trace.executeQuery(pstmt)) {
+                if (trace.next(rs)) {
                     return rs.getInt(1) > 0;
                 }
             }
@@ -311,20 +452,21 @@ public class UserDAO {
         
         Map<String, Integer> counts = new HashMap<>();
         
-        try (Connection conn = DatabaseInitializer.getConnection()) {
-            try (PreparedStatement pstmt = conn.prepareStatement(studentSql)) {
+        try (QueryTrace trace = QueryTrace.start("UserDAO.getUserRecordCounts");
+             Connection conn = trace.acquired(dataSource.getConnection())) {
+            try (PreparedStatement pstmt = trace.prepare(conn, studentSql)) {
                 pstmt.setInt(1, userId);
-                try (ResultSet rs = pstmt.executeQuery()) {
-                    if (rs.next()) {
+                try (ResultSet rs = trace.executeQuery(pstmt)) {
+                    if (trace.next(rs)) {
                         counts.put("studentRecords", rs.getInt(1));
                     }
                 }
             }
             
-            try (PreparedStatement pstmt = conn.prepareStatement(contractorSql)) {
+            try (PreparedStatement pstmt = trace.prepare(conn, contractorSql)) {
                 pstmt.setInt(1, userId);
-                try (ResultSet rs = pstmt.executeQuery()) {
-                    if (rs.next()) {
+                try (ResultSet rs = trace.executeQuery(pstmt)) {
+                    if (trace.next(rs)) {
                         counts.put("contractorRecords", rs.getInt(1));
                     }
                 }
@@ -0,0 +1,28 @@
+package com.mealscan.importer;
+
+import java.io.Reader;
+import java.util.Locale;
+
+public enum ImportFormat {
+    CSV,
+    NDJSON;
+    
+    public static ImportFormat parse(String value) {
+        if (value == null || value.isBlank()) {
+            return CSV;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported import format: " + value + " (expected csv or ndjson)");
+        }
+    }
+    
+    static String normalizeColumn(String name) {
+        return name.trim().toLowerCase(Locale.ROOT).replace("_", "");
+    }
+    
+    RowReader open(Reader reader) {
+        return this == CSV ? new CsvRowReader(reader) : new NdjsonRowReader(reader);
+    }
+}
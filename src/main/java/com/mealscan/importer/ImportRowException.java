@@ -0,0 +1,8 @@
+package com.mealscan.importer;
+
+public class ImportRowException extends Exception {
+    
+    public ImportRowException(String message) {
+        super(message);
+    }
+}
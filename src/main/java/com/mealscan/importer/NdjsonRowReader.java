@@ -0,0 +1,60 @@
+package com.mealscan.importer;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+class NdjsonRowReader implements RowReader {
+    
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+        .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+    
+    private final BufferedReader reader;
+    
+    NdjsonRowReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+    }
+    
+    @Override
+    public Map<String, String> next() throws IOException, ImportRowException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.isBlank());
+        
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (IOException e) {
+            throw new ImportRowException("Malformed JSON");
+        }
+        if (node == null || !node.isObject()) {
+            throw new ImportRowException("Each line must be a JSON object");
+        }
+        
+        Map<String, String> row = new HashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!field.getValue().isNull()) {
+                row.put(ImportFormat.normalizeColumn(field.getKey()), field.getValue().asText());
+            }
+        }
+        return row;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
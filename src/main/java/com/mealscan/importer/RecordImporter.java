@@ -0,0 +1,184 @@
+package com.mealscan.importer;
+
+import com.mealscan.dao.ImportJobDAO;
+import com.mealscan.dao.UserDAO;
+import com.mealscan.model.ImportJob;
+import com.mealscan.model.Record;
+import com.mealscan.model.RecordValidator;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class RecordImporter {
+    
+    public interface ProgressListener {
+        void onRejected(long row, String error);
+        
+        void onChunkCommitted(ImportJob job);
+    }
+    
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    private static final int LOOKUP_CACHE_SIZE = 10_000;
+    
+    private final UserDAO userDAO;
+    private final ImportJobDAO importJobDAO;
+    private final int chunkSize;
+    
+    public RecordImporter() {
+        this(new UserDAO(), new ImportJobDAO(), DEFAULT_CHUNK_SIZE);
+    }
+    
+    public RecordImporter(UserDAO userDAO, ImportJobDAO importJobDAO, int chunkSize) {
+        this.userDAO = userDAO;
+        this.importJobDAO = importJobDAO;
+        this.chunkSize = chunkSize;
+    }
+    
+    public ImportJob startJob(int contractorId, String source, ImportFormat format) throws Exception {
+        return importJobDAO.createJob(new ImportJob(contractorId, source, format.name()));
+    }
+    
+    public ImportJob findJob(int jobId) throws Exception {
+        return importJobDAO.findById(jobId);
+    }
+    
+    // The job as stored, claimed for a run; fails while another run of it is in progress.
+    public ImportJob claimJob(int jobId) throws Exception {
+        ImportJob job = importJobDAO.claimJob(jobId);
+        if (job == null) {
+            throw new IllegalStateException("Import job " + jobId + " is already running");
+        }
+        return job;
+    }
+    
+    // The job comes from startJob or claimJob. Rows up to job.getRowsCommitted() were already
+    // committed by an earlier run and are skipped, so a failed import is resumed by claiming it
+    // again and calling this with the same input.
+    public ImportJob run(ImportJob job, Reader input, Record.RecordType type, ProgressListener listener) throws Exception {
+        ImportFormat format = ImportFormat.parse(job.getFormat());
+        StudentLookupCache students = new StudentLookupCache(userDAO, LOOKUP_CACHE_SIZE);
+        
+        List<Record> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkRows = new ArrayList<>(chunkSize);
+        long row = 0;
+        long rejected = job.getRowsRejected();
+        
+        try (RowReader rows = format.open(input)) {
+            while (row < job.getRowsCommitted()) {
+                try {
+                    if (rows.next() == null) {
+                        break;
+                    }
+                } catch (ImportRowException ignored) {
+                    // Already counted as rejected by the run that committed it.
+                }
+                row++;
+            }
+            
+            while (true) {
+                Map<String, String> fields;
+                try {
+                    fields = rows.next();
+                    if (fields == null) {
+                        break;
+                    }
+                    row++;
+                } catch (ImportRowException e) {
+                    fields = null;
+                    row++;
+                    rejected++;
+                    listener.onRejected(row, e.getMessage());
+                }
+                
+                if (fields != null) {
+                    try {
+                        chunk.add(toRecord(fields, job.getContractorId(), type, students));
+                        chunkRows.add(row);
+                    } catch (IllegalArgumentException e) {
+                        rejected++;
+                        listener.onRejected(row, e.getMessage());
+                    }
+                }
+                
+                if (row - job.getRowsCommitted() >= chunkSize) {
+                    rejected += flush(job, chunk, chunkRows, row, rejected, listener);
+                }
+            }
+            
+            if (row > job.getRowsCommitted() || !chunk.isEmpty()) {
+                flush(job, chunk, chunkRows, row, rejected, listener);
+            }
+            importJobDAO.updateStatus(job, ImportJob.Status.COMPLETED);
+            return job;
+            
+        } catch (ImportJobDAO.CheckpointConflictException e) {
+            // The job belongs to the run that moved the checkpoint; its status is not ours to set.
+            throw e;
+        } catch (Exception e) {
+            importJobDAO.updateStatus(job, ImportJob.Status.FAILED);
+            throw e;
+        }
+    }
+    
+    private long flush(ImportJob job, List<Record> chunk, List<Long> chunkRows, long row,
+                       long rejected, ProgressListener listener) throws Exception {
+        Set<Integer> ids = new HashSet<>();
+        for (Record record : chunk) {
+            ids.add(record.getStudentId());
+        }
+        Set<Integer> known = userDAO.findStudentIds(ids);
+        
+        List<Record> valid = new ArrayList<>(chunk.size());
+        long newlyRejected = 0;
+        for (int i = 0; i < chunk.size(); i++) {
+            if (known.contains(chunk.get(i).getStudentId())) {
+                valid.add(chunk.get(i));
+            } else {
+                newlyRejected++;
+                listener.onRejected(chunkRows.get(i), "Student not found");
+            }
+        }
+        
+        importJobDAO.commitChunk(job, valid, row, rejected + newlyRejected);
+        chunk.clear();
+        chunkRows.clear();
+        listener.onChunkCommitted(job);
+        return newlyRejected;
+    }
+    
+    private Record toRecord(Map<String, String> fields, int contractorId, Record.RecordType type,
+                            StudentLookupCache students) throws Exception {
+        int studentId;
+        String email = fields.get("studentemail");
+        String id = fields.get("studentid");
+        
+        if (email != null && !email.isBlank()) {
+            Integer resolved = students.resolve(email);
+            if (resolved == null) {
+                throw new IllegalArgumentException("Student not found: " + email.trim());
+            }
+            studentId = resolved;
+        } else if (id != null && !id.isBlank()) {
+            try {
+                studentId = Integer.parseInt(id.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid student ID");
+            }
+        } else {
+            throw new IllegalArgumentException("All fields are required");
+        }
+        
+        String cost = fields.get("cost");
+        String recordDate = fields.get("recorddate");
+        if (cost == null || cost.isBlank() || recordDate == null || recordDate.isBlank()) {
+            throw new IllegalArgumentException("All fields are required");
+        }
+        
+        return RecordValidator.create(studentId, contractorId, type, fields.get("mealtype"), fields.get("items"),
+                                      RecordValidator.parseCost(cost), RecordValidator.parseDate(recordDate));
+    }
+}
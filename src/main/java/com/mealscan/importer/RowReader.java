@@ -0,0 +1,12 @@
+package com.mealscan.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+interface RowReader extends Closeable {
+    
+    // Returns the next row keyed by normalized column name, or null at end of input. A row that
+    // cannot be parsed throws ImportRowException and the reader stays positioned on the next row.
+    Map<String, String> next() throws IOException, ImportRowException;
+}
@@ -0,0 +1,38 @@
+package com.mealscan.importer;
+
+import com.mealscan.dao.UserDAO;
+import com.mealscan.model.User;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Bounded LRU of student email to id for the lifetime of one import. Unknown emails are cached
+// too, so a register full of one misspelt address costs a single query.
+class StudentLookupCache {
+    
+    private static final int NOT_A_STUDENT = -1;
+    
+    private final UserDAO userDAO;
+    private final Map<String, Integer> ids;
+    
+    StudentLookupCache(UserDAO userDAO, int capacity) {
+        this.userDAO = userDAO;
+        this.ids = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+    
+    Integer resolve(String email) throws Exception {
+        String key = email.trim();
+        Integer id = ids.get(key);
+        if (id == null) {
+            User user = userDAO.findByEmail(key);
+            id = user != null && user.getRole() == User.UserRole.STUDENT ? user.getId() : NOT_A_STUDENT;
+            ids.put(key, id);
+        }
+        return id == NOT_A_STUDENT ? null : id;
+    }
+}
@@ -0,0 +1,42 @@
+package com.mealscan.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// One DAO method call, emitted by the DAO's QueryTrace. The three timespans split the call's
+// duration; whatever is left is parameter binding and the caller's own work.
+@Name("mealscan.DaoCall")
+@Label("DAO Call")
+@Category({"MealScan", "Database"})
+@Description("A DAO method call with its connection wait, statement execution and row mapping times")
+@StackTrace(false)
+public class DaoCallEvent extends jdk.jfr.Event {
+    
+    @Label("Method")
+    public String method;
+    
+    @Label("SQL Id")
+    @Description("Hex hash of the first statement's SQL text, stable across runs")
+    public String sqlId;
+    
+    @Label("Rows")
+    @Description("Rows read plus rows changed")
+    public long rows;
+    
+    @Label("Connection Acquire Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long acquireTime;
+    
+    @Label("Execute Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long executeTime;
+    
+    @Label("Mapping Time")
+    @Description("Time after the first execute that was not spent executing, such as reading rows into objects")
+    @Timespan(Timespan.NANOSECONDS)
+    public long mappingTime;
+}
@@ -0,0 +1,137 @@
+package com.mealscan.metrics;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide registry behind /api/metrics. Series are created on first use and live for the
+// life of the process; labels only come from registered servlet mappings, a fixed set of HTTP
+// methods and DAO method names, so the number of series stays bounded. Lookups try a plain get
+// before computeIfAbsent, which can lock a map bin even when the key is already there.
+public final class Metrics {
+    
+    private static final Set<String> METHODS = Set.of("GET", "HEAD", "POST", "PUT", "DELETE", "PATCH", "OPTIONS");
+    
+    private static final Map<String, Endpoint> ENDPOINTS = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> DAO_CALLS = new ConcurrentHashMap<>();
+    private static final LatencyHistogram INGEST_COMMITS = new LatencyHistogram();
+    private static final LatencyHistogram INGEST_ACKS = new LatencyHistogram();
+    
+    public static final class Endpoint {
+        private final String method;
+        private final String path;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder inFlight = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        
+        private Endpoint(String method, String path) {
+            this.method = method;
+            this.path = path;
+        }
+        
+        public void started() {
+            inFlight.increment();
+        }
+        
+        public void finished(int status, long nanos) {
+            inFlight.decrement();
+            latency.record(nanos);
+            LongAdder count = statuses.get(status);
+            if (count == null) {
+                count = statuses.computeIfAbsent(status, s -> new LongAdder());
+            }
+            count.increment();
+        }
+    }
+    
+    private Metrics() {}
+    
+    public static Endpoint endpoint(String method, String path) {
+        String normalized = METHODS.contains(method) ? method : "OTHER";
+        String key = normalized + " " + path;
+        Endpoint endpoint = ENDPOINTS.get(key);
+        return endpoint != null ? endpoint : ENDPOINTS.computeIfAbsent(key, k -> new Endpoint(normalized, path));
+    }
+    
+    public static LatencyHistogram dao(String operation) {
+        LatencyHistogram histogram = DAO_CALLS.get(operation);
+        return histogram != null ? histogram : DAO_CALLS.computeIfAbsent(operation, key -> new LatencyHistogram());
+    }
+    
+    // One observation per group commit of queued uploads.
+    public static LatencyHistogram ingestCommit() {
+        return INGEST_COMMITS;
+    }
+    
+    // One observation per queued upload, from being queued to its group having committed.
+    public static LatencyHistogram ingestAck() {
+        return INGEST_ACKS;
+    }
+    
+    public static void write(StringBuilder out) {
+        writeHttp(out);
+        writeDao(out);
+        writeIngest(out);
+    }
+    
+    // Numeric entries of an existing stats snapshot, as untyped series: fooBar becomes prefix_foo_bar.
+    public static void writeSnapshot(StringBuilder out, String prefix, Map<String, Object> snapshot) {
+        for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+            if (entry.getValue() instanceof Number number) {
+                String name = prefix + "_" + entry.getKey().replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+                out.append("# TYPE ").append(name).append(" untyped\n");
+                out.append(name).append(' ').append(number).append('\n');
+            }
+        }
+    }
+    
+    private static void writeHttp(StringBuilder out) {
+        out.append("# HELP mealscan_http_request_duration_seconds Time from the request entering the filter chain to the response completing.\n");
+        out.append("# TYPE mealscan_http_request_duration_seconds histogram\n");
+        for (Endpoint endpoint : ENDPOINTS.values()) {
+            endpoint.latency.write(out, "mealscan_http_request_duration_seconds", labels(endpoint));
+        }
+        
+        out.append("# HELP mealscan_http_responses_total Completed requests by response status.\n");
+        out.append("# TYPE mealscan_http_responses_total counter\n");
+        for (Endpoint endpoint : ENDPOINTS.values()) {
+            for (Map.Entry<Integer, LongAdder> status : endpoint.statuses.entrySet()) {
+                out.append("mealscan_http_responses_total{").append(labels(endpoint)).append(",status=\"")
+                   .append(status.getKey()).append("\"} ").append(status.getValue().sum()).append('\n');
+            }
+        }
+        
+        out.append("# HELP mealscan_http_requests_in_flight Requests currently being served.\n");
+        out.append("# TYPE mealscan_http_requests_in_flight gauge\n");
+        for (Endpoint endpoint : ENDPOINTS.values()) {
+            out.append("mealscan_http_requests_in_flight{").append(labels(endpoint)).append("} ")
+               .append(endpoint.inFlight.sum()).append('\n');
+        }
+    }
+    
+    private static void writeDao(StringBuilder out) {
+        out.append("# HELP mealscan_dao_call_duration_seconds Time a DAO method held its database connection.\n");
+        out.append("# TYPE mealscan_dao_call_duration_seconds histogram\n");
+        for (Map.Entry<String, LatencyHistogram> call : DAO_CALLS.entrySet()) {
+            call.getValue().write(out, "mealscan_dao_call_duration_seconds", "operation=\"" + escape(call.getKey()) + "\"");
+        }
+    }
+    
+    private static void writeIngest(StringBuilder out) {
+        out.append("# HELP mealscan_ingest_commit_duration_seconds Time to commit one group of queued uploads.\n");
+        out.append("# TYPE mealscan_ingest_commit_duration_seconds histogram\n");
+        INGEST_COMMITS.write(out, "mealscan_ingest_commit_duration_seconds", "");
+        out.append("# HELP mealscan_ingest_ack_duration_seconds Time from an upload being queued to its group committing.\n");
+        out.append("# TYPE mealscan_ingest_ack_duration_seconds histogram\n");
+        INGEST_ACKS.write(out, "mealscan_ingest_ack_duration_seconds", "");
+    }
+    
+    private static String labels(Endpoint endpoint) {
+        return "method=\"" + endpoint.method + "\",endpoint=\"" + escape(endpoint.path) + "\"";
+    }
+    
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,76 @@
+package com.mealscan.metrics;
+
+import com.mealscan.auth.UserPrincipal;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jdk.jfr.EventType;
+import org.eclipse.jetty.server.Request;
+
+import java.io.IOException;
+
+// Times every request against the servlet mapping that serves it, so /api/records?type=mess and
+// /api/records?type=canteen share a series. Async requests (login) are recorded on completion.
+// The same span is emitted as a RequestEvent for flight recordings, allocated only while one has
+// the event enabled.
+public class MetricsFilter extends HttpFilter {
+    
+    private static final EventType REQUEST = EventType.getEventType(RequestEvent.class);
+    
+    @Override
+    protected void doFilter(HttpServletRequest req, HttpServletResponse resp, FilterChain chain)
+            throws IOException, ServletException {
+        Metrics.Endpoint endpoint = Metrics.endpoint(req.getMethod(), req.getHttpServletMapping().getPattern());
+        RequestEvent recording = REQUEST.isEnabled() ? new RequestEvent() : null;
+        if (recording != null) {
+            recording.begin();
+        }
+        long start = System.nanoTime();
+        endpoint.started();
+        boolean failed = true;
+        try {
+            chain.doFilter(req, resp);
+            failed = false;
+        } finally {
+            if (!failed && req.isAsyncStarted()) {
+                req.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        endpoint.finished(resp.getStatus(), System.nanoTime() - start);
+                        commit(recording, req, resp.getStatus());
+                    }
+                    
+                    @Override
+                    public void onTimeout(AsyncEvent event) {}
+                    
+                    @Override
+                    public void onError(AsyncEvent event) {}
+                    
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {}
+                });
+            } else {
+                // An exception escaping the servlet becomes a 500 after this filter returns.
+                endpoint.finished(failed ? 500 : resp.getStatus(), System.nanoTime() - start);
+                commit(recording, req, failed ? 500 : resp.getStatus());
+            }
+        }
+    }
+    
+    private static void commit(RequestEvent event, HttpServletRequest req, int status) {
+        if (event == null || !event.shouldCommit()) {
+            return;
+        }
+        UserPrincipal principal = UserPrincipal.from(req);
+        event.method = req.getMethod();
+        event.endpoint = req.getHttpServletMapping().getPattern();
+        event.role = principal != null ? principal.role() : null;
+        event.status = status;
+        event.bytesWritten = Request.getBaseRequest(req).getResponse().getHttpOutput().getWritten();
+        event.commit();
+    }
+}
@@ -0,0 +1,36 @@
+package com.mealscan.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// One servlet request, emitted by MetricsFilter. Disabled unless a flight recording asks for it:
+// -XX:StartFlightRecording or jcmd <pid> JFR.start, then jfr print --events mealscan.Request.
+@Name("mealscan.Request")
+@Label("HTTP Request")
+@Category({"MealScan", "HTTP"})
+@Description("A request through the servlet filter chain, from entry to response completion")
+@StackTrace(false)
+public class RequestEvent extends jdk.jfr.Event {
+    
+    @Label("Method")
+    public String method;
+    
+    @Label("Endpoint")
+    @Description("Servlet mapping that served the request")
+    public String endpoint;
+    
+    @Label("Role")
+    public String role;
+    
+    @Label("Status")
+    public int status;
+    
+    @Label("Bytes Written")
+    @Description("Response body bytes written by the servlet, before compression")
+    @DataAmount
+    public long bytesWritten;
+}
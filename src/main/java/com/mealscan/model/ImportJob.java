@@ -0,0 +1,103 @@
+package com.mealscan.model;
+
+public class ImportJob {
+    private int id;
+    private int contractorId;
+    private String source;
+    private String format;
+    private long rowsCommitted;
+    private long recordsImported;
+    private long rowsRejected;
+    private Status status;
+    
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+    
+    public ImportJob() {}
+    
+    public ImportJob(int contractorId, String source, String format) {
+        this.contractorId = contractorId;
+        this.source = source;
+        this.format = format;
+        this.status = Status.RUNNING;
+    }
+    
+    public int getId() {
+        return id;
+    }
+    
+    public void setId(int id) {
+        this.id = id;
+    }
+    
+    public int getContractorId() {
+        return contractorId;
+    }
+    
+    public void setContractorId(int contractorId) {
+        this.contractorId = contractorId;
+    }
+    
+    public String getSource() {
+        return source;
+    }
+    
+    public void setSource(String source) {
+        this.source = source;
+    }
+    
+    public String getFormat() {
+        return format;
+    }
+    
+    public void setFormat(String format) {
+        this.format = format;
+    }
+    
+    public long getRowsCommitted() {
+        return rowsCommitted;
+    }
+    
+    public void setRowsCommitted(long rowsCommitted) {
+        this.rowsCommitted = rowsCommitted;
+    }
+    
+    public long getRecordsImported() {
+        return recordsImported;
+    }
+    
+    public void setRecordsImported(long recordsImported) {
+        this.recordsImported = recordsImported;
+    }
+    
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+    
+    public void setRowsRejected(long rowsRejected) {
+        this.rowsRejected = rowsRejected;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+    
+    @Override
+    public String toString() {
+        return "ImportJob{" +
+                "id=" + id +
+                ", source='" + source + '\'' +
+                ", rowsCommitted=" + rowsCommitted +
+                ", recordsImported=" + recordsImported +
+                ", rowsRejected=" + rowsRejected +
+                ", status=" + status +
+                '}';
+    }
+}
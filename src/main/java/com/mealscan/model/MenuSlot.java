@@ -0,0 +1,25 @@
+package com.mealscan.model;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+
+// One line of a contractor's menu: what is served, and charged, from startsAt up to endsAt. A slot
+// that ends before it starts runs past midnight.
+public record MenuSlot(int id, int contractorId, String mealType, String items, BigDecimal cost,
+                       LocalTime startsAt, LocalTime endsAt) {
+    
+    public boolean covers(LocalTime time) {
+        return startsAt.isBefore(endsAt)
+            ? !time.isBefore(startsAt) && time.isBefore(endsAt)
+            : !time.isBefore(startsAt) || time.isBefore(endsAt);
+    }
+    
+    // Two spans of the clock overlap exactly when one of them covers the other's start.
+    public boolean overlaps(MenuSlot other) {
+        return covers(other.startsAt) || other.covers(startsAt);
+    }
+    
+    public MenuSlot withId(int id) {
+        return new MenuSlot(id, contractorId, mealType, items, cost, startsAt, endsAt);
+    }
+}
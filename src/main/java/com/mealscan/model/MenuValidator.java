@@ -0,0 +1,60 @@
+package com.mealscan.model;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class MenuValidator {
+    
+    public static final int MAX_SLOTS = 24;
+    
+    public static List<MenuSlot> fromRequest(List<Map<String, Object>> data, int contractorId) {
+        if (data.size() > MAX_SLOTS) {
+            throw new IllegalArgumentException("A menu can have at most " + MAX_SLOTS + " slots");
+        }
+        
+        List<MenuSlot> slots = new ArrayList<>(data.size());
+        for (Map<String, Object> slot : data) {
+            if (slot == null || !(slot.get("mealType") instanceof String mealType) || mealType.trim().isEmpty() ||
+                !(slot.get("items") instanceof String items) || items.trim().isEmpty() ||
+                slot.get("cost") == null || slot.get("startsAt") == null || slot.get("endsAt") == null) {
+                throw new IllegalArgumentException("Every slot needs mealType, items, cost, startsAt and endsAt");
+            }
+            slots.add(create(contractorId, mealType.trim(), items.trim(), slot.get("cost"),
+                             parseTime(slot.get("startsAt").toString()), parseTime(slot.get("endsAt").toString())));
+        }
+        
+        // A scan takes its meal from the one slot that covers the time, so there can be only one.
+        for (int i = 0; i < slots.size(); i++) {
+            for (int j = i + 1; j < slots.size(); j++) {
+                if (slots.get(i).overlaps(slots.get(j))) {
+                    throw new IllegalArgumentException("Slots " + slots.get(i).mealType() + " and " +
+                                                       slots.get(j).mealType() + " overlap");
+                }
+            }
+        }
+        return slots;
+    }
+    
+    private static MenuSlot create(int contractorId, String mealType, String items, Object cost,
+                                   LocalTime startsAt, LocalTime endsAt) {
+        MenuSlot slot = new MenuSlot(0, contractorId, mealType, items, RecordValidator.parseCost(cost), startsAt, endsAt);
+        if (slot.cost().signum() <= 0) {
+            throw new IllegalArgumentException("Cost must be greater than 0");
+        }
+        if (startsAt.equals(endsAt)) {
+            throw new IllegalArgumentException("Slot " + mealType + " must end at a different time than it starts");
+        }
+        return slot;
+    }
+    
+    private static LocalTime parseTime(String time) {
+        try {
+            return LocalTime.parse(time.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid slot time, expected HH:MM");
+        }
+    }
+}
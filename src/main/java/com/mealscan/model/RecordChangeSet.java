@@ -0,0 +1,10 @@
+package com.mealscan.model;
+
+import java.util.List;
+
+// Records added and removed after a watermark, oldest change first. Pass watermark back as the
+// next since; while hasMore is set there are further changes right after it.
+public record RecordChangeSet(List<Record> upserts, List<Deletion> deletes, long watermark, boolean hasMore) {
+    
+    public record Deletion(int id, Record.RecordType type) {}
+}
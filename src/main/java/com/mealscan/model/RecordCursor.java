@@ -0,0 +1,33 @@
+package com.mealscan.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+public record RecordCursor(LocalDate recordDate, LocalDateTime createdAt, int id) {
+    
+    public static RecordCursor of(Record record) {
+        return new RecordCursor(record.getRecordDate(), record.getCreatedAt(), record.getId());
+    }
+    
+    public String encode() {
+        String raw = recordDate + "|" + createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public static RecordCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new RecordCursor(LocalDate.parse(parts[0]), LocalDateTime.parse(parts[1]), Integer.parseInt(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.mealscan.model;
+
+import java.util.List;
+
+public class RecordPage {
+    private final List<Record> records;
+    private final String nextCursor;
+    
+    public RecordPage(List<Record> records, String nextCursor) {
+        this.records = records;
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<Record> getRecords() {
+        return records;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,67 @@
+package com.mealscan.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+public class RecordValidator {
+    
+    public static Record.RecordType typeForRole(String userRole) {
+        return "MESS_CONTRACTOR".equals(userRole) ? Record.RecordType.MESS : Record.RecordType.CANTEEN;
+    }
+    
+    public static Record fromRequest(Map<String, Object> data, int contractorId, Record.RecordType type) {
+        Object studentIdObj = data.get("studentId");
+        Object mealTypeObj = data.get("mealType");
+        Object itemsObj = data.get("items");
+        Object costObj = data.get("cost");
+        Object recordDateObj = data.get("recordDate");
+        
+        if (studentIdObj == null || costObj == null || recordDateObj == null ||
+            !(mealTypeObj instanceof String mealType) || mealType.trim().isEmpty() ||
+            !(itemsObj instanceof String items) || items.trim().isEmpty()) {
+            throw new IllegalArgumentException("All fields are required");
+        }
+        
+        int studentId;
+        if (studentIdObj instanceof Integer id) {
+            studentId = id;
+        } else {
+            throw new IllegalArgumentException("Invalid student ID");
+        }
+        
+        return create(studentId, contractorId, type, mealType, items, parseCost(costObj), parseDate(recordDateObj.toString()));
+    }
+    
+    public static Record create(int studentId, int contractorId, Record.RecordType type,
+                                String mealType, String items, BigDecimal cost, LocalDate recordDate) {
+        if (mealType == null || mealType.trim().isEmpty() || items == null || items.trim().isEmpty() ||
+            cost == null || recordDate == null) {
+            throw new IllegalArgumentException("All fields are required");
+        }
+        if (cost.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Cost must be greater than 0");
+        }
+        return new Record(studentId, contractorId, type, mealType, items, cost, recordDate);
+    }
+    
+    public static BigDecimal parseCost(Object costObj) {
+        try {
+            if (costObj instanceof Number number) {
+                return BigDecimal.valueOf(number.doubleValue());
+            }
+            return new BigDecimal(costObj.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cost");
+        }
+    }
+    
+    public static LocalDate parseDate(String recordDate) {
+        try {
+            return LocalDate.parse(recordDate.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid record date, expected YYYY-MM-DD");
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.mealscan.servlet;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mealscan.auth.UserPrincipal;
+import com.mealscan.dao.RecordDAO;
+import com.mealscan.dao.UserDAO;
+import com.mealscan.model.Record;
+import com.mealscan.model.RecordValidator;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class BatchUploadRecordServlet extends HttpServlet {
+    
+    private static final int MAX_BATCH_SIZE = 1000;
+    
+    private final RecordDAO recordDAO = new RecordDAO();
+    private final UserDAO userDAO = new UserDAO();
+    
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        
+        UserPrincipal principal = UserPrincipal.from(req);
+        if (principal == null) {
+            Json.error(resp, 401, "Unauthorized");
+            return;
+        }
+        
+        String userRole = principal.role();
+        if (!"MESS_CONTRACTOR".equals(userRole) && !"CANTEEN_CONTRACTOR".equals(userRole)) {
+            Json.error(resp, 403, "Only contractors can upload records");
+            return;
+        }
+        
+        try {
+            int contractorId = principal.userId();
+            Record.RecordType type = RecordValidator.typeForRole(userRole);
+            
+            JsonNode body = Json.readTree(req);
+            JsonNode items = body != null && body.isObject() ? body.get("records") : body;
+            
+            if (items == null || !items.isArray() || items.isEmpty()) {
+                Json.error(resp, 400, "A non-empty array of records is required");
+                return;
+            }
+            if (items.size() > MAX_BATCH_SIZE) {
+                Json.error(resp, 400, "At most " + MAX_BATCH_SIZE + " records can be uploaded per batch");
+                return;
+            }
+            
+            List<Record> records = new ArrayList<>(items.size());
+            List<Responses.ItemError> errors = new ArrayList<>();
+            Set<Integer> studentIds = new HashSet<>();
+            
+            for (int i = 0; i < items.size(); i++) {
+                try {
+                    if (!items.get(i).isObject()) {
+                        throw new IllegalArgumentException("Record must be a JSON object");
+                    }
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> data = Json.MAPPER.convertValue(items.get(i), Map.class);
+                    Record record = RecordValidator.fromRequest(data, contractorId, type);
+                    records.add(record);
+                    studentIds.add(record.getStudentId());
+                } catch (IllegalArgumentException e) {
+                    records.add(null);
+                    errors.add(new Responses.ItemError(i, e.getMessage()));
+                }
+            }
+            
+            Set<Integer> knownStudents = userDAO.findStudentIds(studentIds);
+            for (int i = 0; i < records.size(); i++) {
+                Record record = records.get(i);
+                if (record != null && !knownStudents.contains(record.getStudentId())) {
+                    errors.add(new Responses.ItemError(i, "Student not found"));
+                }
+            }
+            
+            if (!errors.isEmpty()) {
+                errors.sort(Comparator.comparingInt(Responses.ItemError::index));
+                Json.write(resp, 400, new Responses.BatchRejected(
+                    errors.size() + " of " + items.size() + " records are invalid; nothing was uploaded", errors));
+                return;
+            }
+            
+            recordDAO.createRecords(records);
+            LiveEvents.recordsCreated(records);
+            
+            List<Integer> ids = new ArrayList<>(records.size());
+            for (Record record : records) {
+                ids.add(record.getId());
+            }
+            
+            Json.write(resp, 201, new Responses.BatchUploaded(ids));
+            
+        } catch (Exception e) {
+            e.printStackTrace();
+            Json.error(resp, 500, "Failed to upload records: " + e.getMessage());
+        }
+    }
+}
@@ -1,54 +1,51 @@
 package com.mealscan.servlet;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.mealscan.auth.UserPrincipal;
+import com.mealscan.dao.BillLedgerDAO;
 import com.mealscan.dao.RecordDAO;
 import com.mealscan.model.Record;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.YearMonth;
 
 public class BillServlet extends HttpServlet {
     
-    private final RecordDAO recordDAO = new RecordDAO();
-    private final ObjectMapper objectMapper;
+    // Late uploads and deletions can still touch a past month, so even closed months are only
+    // trusted for a day before the browser revalidates; the current month always revalidates.
+    private static final String CLOSED_MONTH_CACHE_CONTROL = "private, max-age=86400";
+    private static final String OPEN_MONTH_CACHE_CONTROL = "private, no-cache";
     
-    public BillServlet() {
-        objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-    }
+    private final RecordDAO recordDAO = new RecordDAO();
+    private final BillLedgerDAO billLedgerDAO = new BillLedgerDAO();
     
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
         
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("userId") == null) {
-            sendError(resp, "Unauthorized", 401);
+        UserPrincipal principal = UserPrincipal.from(req);
+        if (principal == null) {
+            Json.error(resp, 401, "Unauthorized");
             return;
         }
         
-        String userRole = (String) session.getAttribute("userRole");
+        String userRole = principal.role();
         if (!"STUDENT".equals(userRole)) {
-            sendError(resp, "Only students can view bills", 403);
+            Json.error(resp, 403, "Only students can view bills");
             return;
         }
         
         try {
-            int studentId = (int) session.getAttribute("userId");
+            int studentId = principal.userId();
             String type = req.getParameter("type");
             String yearStr = req.getParameter("year");
             String monthStr = req.getParameter("month");
             
             if (type == null || type.isEmpty() || yearStr == null || monthStr == null) {
-                sendError(resp, "Type, year, and month parameters are required", 400);
+                Json.error(resp, 400, "Type, year, and month parameters are required");
                 return;
             }
             
@@ -57,40 +54,56 @@ public class BillServlet extends HttpServlet {
             int month = Integer.parseInt(monthStr);
             
             if (month < 1 || month > 12) {
-                sendError(resp, "Month must be between 1 and 12", 400);
+                Json.error(resp, 400, "Month must be between 1 and 12");
                 return;
             }
             
-            List<Record> records = recordDAO.getMonthlyBill(studentId, recordType, year, month);
-            
-            BigDecimal total = records.stream()
-                .map(Record::getCost)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+            YearMonth billMonth = YearMonth.of(year, month);
+            boolean summary = "true".equalsIgnoreCase(req.getParameter("summary"));
+            // Read before any rows: a write landing in between leaves the tag older than the body,
+            // which only costs the client one more full fetch.
+            long version = billLedgerDAO.getVersion(studentId, recordType, year, month);
+            String etag = "\"bill-" + studentId + "-" + recordType + "-" + billMonth + "-v" + version +
+                          (summary ? "-summary" : "") + "\"";
+            resp.setHeader("ETag", etag);
+            resp.setHeader("Cache-Control", billMonth.isBefore(YearMonth.now()) ? CLOSED_MONTH_CACHE_CONTROL
+                                                                                : OPEN_MONTH_CACHE_CONTROL);
+            if (ETags.matches(req.getHeader("If-None-Match"), etag)) {
+                resp.setStatus(304);
+                return;
+            }
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("records", records);
-            response.put("total", total);
-            response.put("month", month);
-            response.put("year", year);
-            response.put("type", type);
+            if (summary) {
+                BillLedgerDAO.MonthlyTotal monthlyTotal = billLedgerDAO.getMonthlyTotal(studentId, recordType, year, month);
+                
+                Json.write(resp, 200, new Responses.BillSummary(true, monthlyTotal.total(), monthlyTotal.recordCount(),
+                                                                month, year, type));
+                return;
+            }
             
             resp.setStatus(200);
-            objectMapper.writeValue(resp.getWriter(), response);
+            JsonGenerator generator = Json.generator(resp);
+            StreamingRecordWriter writer = new StreamingRecordWriter(generator);
+            
+            generator.writeStartObject();
+            generator.writeBooleanField("success", true);
+            generator.writeNumberField("month", month);
+            generator.writeNumberField("year", year);
+            generator.writeStringField("type", type);
+            generator.writeArrayFieldStart("records");
+            
+            recordDAO.streamMonthlyBill(studentId, recordType, year, month, writer);
+            
+            generator.writeEndArray();
+            generator.writeNumberField("total", writer.getTotal());
+            generator.writeEndObject();
+            generator.close();
             
         } catch (IllegalArgumentException e) {
-            sendError(resp, "Invalid parameters: " + e.getMessage(), 400);
+            Json.error(resp, 400, "Invalid parameters: " + e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
-            sendError(resp, "Failed to generate bill: " + e.getMessage(), 500);
+            Json.error(resp, 500, "Failed to generate bill: " + e.getMessage());
         }
     }
-    
-    private void sendError(HttpServletResponse resp, String message, int status) throws IOException {
-        resp.setStatus(status);
-        Map<String, Object> error = new HashMap<>();
-        error.put("success", false);
-        error.put("error", message);
-        objectMapper.writeValue(resp.getWriter(), error);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.mealscan.servlet;
+
+final class ETags {
+    
+    private ETags() {}
+    
+    // If-None-Match uses the weak comparison, so a W/ prefix added by an intermediary still matches.
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
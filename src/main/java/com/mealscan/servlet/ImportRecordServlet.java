@@ -0,0 +1,105 @@
+package com.mealscan.servlet;
+
+import com.mealscan.auth.UserPrincipal;
+import com.mealscan.dao.ImportJobDAO;
+import com.mealscan.importer.ImportFormat;
+import com.mealscan.importer.RecordImporter;
+import com.mealscan.model.ImportJob;
+import com.mealscan.model.RecordValidator;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportRecordServlet extends HttpServlet {
+    
+    private static final int MAX_REPORTED_ERRORS = 100;
+    
+    private final RecordImporter importer = new RecordImporter();
+    
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        
+        UserPrincipal principal = UserPrincipal.from(req);
+        if (principal == null) {
+            Json.error(resp, 401, "Unauthorized");
+            return;
+        }
+        
+        String userRole = principal.role();
+        if (!"MESS_CONTRACTOR".equals(userRole) && !"CANTEEN_CONTRACTOR".equals(userRole)) {
+            Json.error(resp, 403, "Only contractors can import records");
+            return;
+        }
+        
+        int contractorId = principal.userId();
+        ImportJob job;
+        
+        try {
+            String jobIdStr = req.getParameter("jobId");
+            if (jobIdStr != null && !jobIdStr.isEmpty()) {
+                job = importer.findJob(Integer.parseInt(jobIdStr));
+                if (job == null || job.getContractorId() != contractorId) {
+                    Json.error(resp, 404, "Import job not found");
+                    return;
+                }
+                job = importer.claimJob(job.getId());
+            } else {
+                ImportFormat format = ImportFormat.parse(req.getParameter("format"));
+                String source = req.getParameter("source");
+                job = importer.startJob(contractorId, source == null || source.isBlank() ? "upload" : source, format);
+            }
+        } catch (IllegalArgumentException e) {
+            Json.error(resp, 400, "Invalid parameters: " + e.getMessage());
+            return;
+        } catch (IllegalStateException e) {
+            Json.error(resp, 409, e.getMessage());
+            return;
+        } catch (Exception e) {
+            e.printStackTrace();
+            Json.error(resp, 500, "Failed to start import: " + e.getMessage());
+            return;
+        }
+        
+        if (req.getCharacterEncoding() == null) {
+            req.setCharacterEncoding("UTF-8");
+        }
+        
+        List<Responses.RowError> errors = new ArrayList<>();
+        RecordImporter.ProgressListener listener = new RecordImporter.ProgressListener() {
+            @Override
+            public void onRejected(long row, String error) {
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(new Responses.RowError(row, error));
+                }
+            }
+            
+            @Override
+            public void onChunkCommitted(ImportJob progress) {
+                // Progress is already saved on the job row with each chunk; nothing more to report.
+            }
+        };
+        
+        try {
+            importer.run(job, req.getReader(), RecordValidator.typeForRole(userRole), listener);
+            
+            Json.write(resp, 200, Responses.ImportSummary.of(job, null, errors));
+            
+        } catch (ImportJobDAO.CheckpointConflictException e) {
+            Json.write(resp, 409, Responses.ImportSummary.of(job, e.getMessage(), errors));
+        } catch (Exception e) {
+            e.printStackTrace();
+            String error = "Import failed after " + job.getRowsCommitted() +
+                           " rows; resend the same file with jobId=" + job.getId() + " to resume: " + e.getMessage();
+            Json.write(resp, 500, Responses.ImportSummary.of(job, error, errors));
+        } finally {
+            // Imports are too big to push row by row; the contractor's dashboard reloads instead.
+            // Students see the rows on their next load.
+            LiveEvents.resync(List.of(contractorId));
+        }
+    }
+}
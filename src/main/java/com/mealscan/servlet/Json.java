@@ -0,0 +1,69 @@
+package com.mealscan.servlet;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+// The one ObjectMapper every servlet reads and writes with. Writers and readers are resolved once
+// per type, so serializers are looked up on first use rather than per request. Output goes
+// straight to the response's byte stream, encoded through Jackson's recycled per-thread buffers.
+final class Json {
+    
+    static final String CONTENT_TYPE = "application/json";
+    
+    static final ObjectMapper MAPPER = JsonMapper.builder()
+        .addModule(new JavaTimeModule())
+        .build();
+    
+    private static final ClassValue<ObjectWriter> WRITERS = new ClassValue<>() {
+        @Override
+        protected ObjectWriter computeValue(Class<?> type) {
+            return MAPPER.writerFor(type);
+        }
+    };
+    
+    private static final ClassValue<ObjectReader> READERS = new ClassValue<>() {
+        @Override
+        protected ObjectReader computeValue(Class<?> type) {
+            return MAPPER.readerFor(type);
+        }
+    };
+    
+    private Json() {}
+    
+    static <T> T read(HttpServletRequest req, Class<T> type) throws IOException {
+        return READERS.get(type).readValue(req.getInputStream());
+    }
+    
+    static JsonNode readTree(HttpServletRequest req) throws IOException {
+        return MAPPER.readTree(req.getInputStream());
+    }
+    
+    static void write(HttpServletResponse resp, int status, Object body) throws IOException {
+        resp.setStatus(status);
+        resp.setContentType(CONTENT_TYPE);
+        WRITERS.get(body.getClass()).writeValue(resp.getOutputStream(), body);
+    }
+    
+    static void error(HttpServletResponse resp, int status, String message) throws IOException {
+        if (resp.isCommitted()) {
+            // Part of a streamed body is already on the wire; the truncated JSON signals the failure.
+            return;
+        }
+        resp.resetBuffer();
+        write(resp, status, new Responses.Failure(message));
+    }
+    
+    static JsonGenerator generator(HttpServletResponse resp) throws IOException {
+        resp.setContentType(CONTENT_TYPE);
+        return MAPPER.createGenerator(resp.getOutputStream());
+    }
+}
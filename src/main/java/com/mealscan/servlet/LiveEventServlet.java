@@ -0,0 +1,33 @@
+package com.mealscan.servlet;
+
+import com.mealscan.auth.UserPrincipal;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+// The dashboards' EventSource. The request goes async at once and stays open; see LiveEvents.
+public class LiveEventServlet extends HttpServlet {
+    
+    @Override
+    public void init() {
+        LiveEvents.start();
+    }
+    
+    @Override
+    public void destroy() {
+        LiveEvents.stop();
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        UserPrincipal principal = UserPrincipal.from(req);
+        if (principal == null) {
+            Json.error(resp, 401, "Unauthorized");
+            return;
+        }
+        
+        LiveEvents.subscribe(req, resp, principal.userId());
+    }
+}
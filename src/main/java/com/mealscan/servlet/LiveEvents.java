@@ -0,0 +1,290 @@
+package com.mealscan.servlet;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.mealscan.model.Record;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Pushes record changes to open dashboards as server-sent events, to the contractor who owns the
+// record and to its student. A subscriber is an async request writing through a non-blocking
+// output stream, so no Jetty thread waits on it between events: publishing queues the frame and
+// writes what the socket takes now, and onWritePossible sends the rest. Events are not replayed; a
+// client that falls MAX_PENDING_FRAMES behind is dropped, and like any reconnecting EventSource
+// it then reloads in full.
+final class LiveEvents {
+    
+    static final int MAX_PENDING_FRAMES = 256;
+    // Bigger batches send a single resync instead of one event per record.
+    static final int MAX_RECORD_EVENTS = 100;
+    // Well inside the connector's idle timeout, so an open dashboard is never timed out. Writing it
+    // is also how a client that went away is noticed: the write fails and the subscriber is dropped.
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final byte[] OPEN = "retry: 5000\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESYNC = "event: resync\ndata: {}\n\n".getBytes(StandardCharsets.UTF_8);
+    
+    // Change to the numbers /api/stats reports, from the contractor's point of view.
+    record StatsDelta(int totalRecords, int todayRecords, BigDecimal monthlyEarnings, BigDecimal totalEarnings) {}
+    
+    private static final Map<Integer, Set<Subscriber>> SUBSCRIBERS = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService heartbeat;
+    
+    private LiveEvents() {}
+    
+    static synchronized void start() {
+        if (heartbeat != null) {
+            return;
+        }
+        heartbeat = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "live-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleAtFixedRate(() -> sendAll(HEARTBEAT), HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    static synchronized void stop() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+            heartbeat = null;
+        }
+        for (Set<Subscriber> subscribers : SUBSCRIBERS.values()) {
+            subscribers.forEach(Subscriber::close);
+        }
+    }
+    
+    static int subscriberCount() {
+        return SUBSCRIBERS.values().stream().mapToInt(Set::size).sum();
+    }
+    
+    static void subscribe(HttpServletRequest req, HttpServletResponse resp, int userId) throws IOException {
+        resp.setStatus(200);
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        
+        AsyncContext context = req.startAsync();
+        context.setTimeout(0);
+        Subscriber subscriber = new Subscriber(userId, context, resp.getOutputStream());
+        context.addListener(subscriber);
+        // Publishers write as soon as the subscriber is registered, and a write before the stream
+        // is in non-blocking mode throws, so the listener is set and the open frame queued first.
+        subscriber.out.setWriteListener(subscriber);
+        subscriber.send(OPEN);
+        SUBSCRIBERS.compute(userId, (id, subscribers) -> {
+            Set<Subscriber> set = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+            set.add(subscriber);
+            return set;
+        });
+        if (subscriber.isClosed()) {
+            // The client went away before it was registered; close() has already run.
+            unsubscribe(subscriber);
+        }
+    }
+    
+    // Called after the records are committed; all of them belong to one contractor.
+    static void recordsCreated(List<Record> records) {
+        publish(records, "record-created", 1);
+    }
+    
+    static void recordDeleted(Record record) {
+        publish(List.of(record), "record-deleted", -1);
+    }
+    
+    static void resync(Collection<Integer> userIds) {
+        for (int userId : userIds) {
+            send(userId, RESYNC);
+        }
+    }
+    
+    static void resyncAll() {
+        sendAll(RESYNC);
+    }
+    
+    private static void publish(List<Record> records, String event, int sign) {
+        if (SUBSCRIBERS.isEmpty() || records.isEmpty()) {
+            return;
+        }
+        int contractorId = records.get(0).getContractorId();
+        if (records.size() > MAX_RECORD_EVENTS) {
+            Set<Integer> affected = new LinkedHashSet<>();
+            affected.add(contractorId);
+            records.forEach(record -> affected.add(record.getStudentId()));
+            resync(affected);
+            return;
+        }
+        boolean contractorListening = SUBSCRIBERS.containsKey(contractorId);
+        for (Record record : records) {
+            boolean studentListening = SUBSCRIBERS.containsKey(record.getStudentId());
+            if (!contractorListening && !studentListening) {
+                continue;
+            }
+            byte[] frame = frame(event, record);
+            send(contractorId, frame);
+            send(record.getStudentId(), frame);
+        }
+        if (contractorListening) {
+            send(contractorId, frame("stats-delta", statsDelta(records, sign, LocalDate.now())));
+        }
+    }
+    
+    private static StatsDelta statsDelta(List<Record> records, int sign, LocalDate today) {
+        YearMonth month = YearMonth.from(today);
+        int todayRecords = 0;
+        BigDecimal monthlyEarnings = BigDecimal.ZERO;
+        BigDecimal totalEarnings = BigDecimal.ZERO;
+        for (Record record : records) {
+            BigDecimal cost = sign < 0 ? record.getCost().negate() : record.getCost();
+            totalEarnings = totalEarnings.add(cost);
+            if (today.equals(record.getRecordDate())) {
+                todayRecords += sign;
+            }
+            if (month.equals(YearMonth.from(record.getRecordDate()))) {
+                monthlyEarnings = monthlyEarnings.add(cost);
+            }
+        }
+        return new StatsDelta(sign * records.size(), todayRecords, monthlyEarnings, totalEarnings);
+    }
+    
+    private static byte[] frame(String event, Object data) {
+        try {
+            return ("event: " + event + "\ndata: " + Json.MAPPER.writeValueAsString(data) + "\n\n")
+                .getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static void send(int userId, byte[] frame) {
+        Set<Subscriber> subscribers = SUBSCRIBERS.get(userId);
+        if (subscribers != null) {
+            subscribers.forEach(subscriber -> subscriber.send(frame));
+        }
+    }
+    
+    private static void sendAll(byte[] frame) {
+        for (Set<Subscriber> subscribers : SUBSCRIBERS.values()) {
+            subscribers.forEach(subscriber -> subscriber.send(frame));
+        }
+    }
+    
+    private static void unsubscribe(Subscriber subscriber) {
+        SUBSCRIBERS.computeIfPresent(subscriber.userId, (id, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+    
+    // Writes are serialised on the subscriber: publishers and the container's onWritePossible
+    // both drain the same queue, and only while the stream reports it is ready.
+    private static final class Subscriber implements WriteListener, AsyncListener {
+        private final int userId;
+        private final AsyncContext context;
+        private final ServletOutputStream out;
+        private final ArrayDeque<byte[]> pending = new ArrayDeque<>();
+        private boolean closed;
+        
+        Subscriber(int userId, AsyncContext context, ServletOutputStream out) {
+            this.userId = userId;
+            this.context = context;
+            this.out = out;
+        }
+        
+        synchronized void send(byte[] frame) {
+            if (closed) {
+                return;
+            }
+            if (pending.size() >= MAX_PENDING_FRAMES) {
+                close();
+                return;
+            }
+            pending.add(frame);
+            drain();
+        }
+        
+        synchronized boolean isClosed() {
+            return closed;
+        }
+        
+        @Override
+        public synchronized void onWritePossible() {
+            drain();
+        }
+        
+        @Override
+        public void onError(Throwable failure) {
+            close();
+        }
+        
+        @Override
+        public void onComplete(AsyncEvent event) {
+            close();
+        }
+        
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+        
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+        
+        @Override
+        public void onStartAsync(AsyncEvent event) {}
+        
+        private void drain() {
+            try {
+                while (!closed && out.isReady()) {
+                    byte[] frame = pending.poll();
+                    if (frame == null) {
+                        out.flush();
+                        return;
+                    }
+                    out.write(frame);
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+        
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pending.clear();
+            }
+            unsubscribe(this);
+            try {
+                context.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container after the client went away.
+            }
+        }
+    }
+}
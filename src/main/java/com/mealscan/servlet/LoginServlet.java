@@ -1,74 +1,128 @@
 package com.mealscan.servlet;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mealscan.auth.AuthExecutor;
+import com.mealscan.auth.AuthFilter;
+import com.mealscan.auth.UserPrincipal;
 import com.mealscan.dao.UserDAO;
 import com.mealscan.model.User;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LoginServlet extends HttpServlet {
     
+    private static final int RETRY_AFTER_SECONDS = 2;
+    // A login still waiting for the auth pool after this long is answered 503 instead.
+    private static final long LOGIN_TIMEOUT_MS = 5_000;
+    
     private final UserDAO userDAO = new UserDAO();
-    private final ObjectMapper objectMapper = new ObjectMapper();
     
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
         
+        String email;
+        String password;
         try {
             @SuppressWarnings("unchecked")
-            Map<String, String> loginData = objectMapper.readValue(req.getReader(), Map.class);
-            String email = loginData.get("email");
-            String password = loginData.get("password");
-            
-            if (email == null || email.trim().isEmpty() || 
-                password == null || password.trim().isEmpty()) {
-                sendError(resp, "Email and password are required", 400);
-                return;
+            Map<String, String> loginData = Json.read(req, Map.class);
+            email = loginData.get("email");
+            password = loginData.get("password");
+        } catch (Exception e) {
+            Json.error(resp, 400, "Invalid login request");
+            return;
+        }
+        
+        if (email == null || email.trim().isEmpty() || 
+            password == null || password.trim().isEmpty()) {
+            Json.error(resp, 400, "Email and password are required");
+            return;
+        }
+        
+        // The request thread is released here; the BCrypt check completes the response from the auth pool.
+        AsyncContext async = req.startAsync();
+        async.setTimeout(LOGIN_TIMEOUT_MS);
+        // Whichever of the check and the timeout comes first writes the response.
+        AtomicBoolean answered = new AtomicBoolean();
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (answered.compareAndSet(false, true)) {
+                    resp.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+                    Json.error(resp, 503, "Login is taking too long, please retry shortly");
+                    async.complete();
+                }
             }
             
-            User user = userDAO.authenticate(email, password);
+            @Override
+            public void onComplete(AsyncEvent event) {}
+            
+            @Override
+            public void onError(AsyncEvent event) {}
+            
+            @Override
+            public void onStartAsync(AsyncEvent event) {}
+        });
+        
+        try {
+            AuthExecutor.submit(() -> {
+                if (answered.get()) {
+                    // Timed out while queued and already told to retry, so skip the BCrypt check.
+                    return;
+                }
+                User user = null;
+                Exception failure = null;
+                try {
+                    user = userDAO.authenticate(email, password);
+                } catch (Exception e) {
+                    failure = e;
+                }
+                if (!answered.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    respond(req, resp, user, failure);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    async.complete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            answered.set(true);
+            resp.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+            Json.error(resp, 503, "Too many logins in progress, please retry shortly");
+            async.complete();
+        }
+    }
+    
+    private void respond(HttpServletRequest req, HttpServletResponse resp,
+                         User user, Exception failure) throws IOException {
+        try {
+            if (failure != null) {
+                throw failure;
+            }
             
             if (user == null) {
-                sendError(resp, "Invalid email or password", 401);
+                Json.error(resp, 401, "Invalid email or password");
                 return;
             }
             
-            HttpSession session = req.getSession(true);
-            session.setAttribute("userId", user.getId());
-            session.setAttribute("userRole", user.getRole().name());
-            session.setAttribute("userName", user.getName());
-            session.setMaxInactiveInterval(3600);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("user", Map.of(
-                "id", user.getId(),
-                "email", user.getEmail(),
-                "name", user.getName(),
-                "role", user.getRole().name()
-            ));
+            String token = AuthFilter.signIn(req, resp, new UserPrincipal(user.getId(), user.getRole().name(), user.getName()));
             
-            resp.setStatus(200);
-            objectMapper.writeValue(resp.getWriter(), response);
+            Json.write(resp, 200, new Responses.LoggedIn(user, token));
             
         } catch (Exception e) {
             e.printStackTrace();
-            sendError(resp, "Login failed: " + e.getMessage(), 500);
+            Json.error(resp, 500, "Login failed: " + e.getMessage());
         }
     }
-    
-    private void sendError(HttpServletResponse resp, String message, int status) throws IOException {
-        resp.setStatus(status);
-        Map<String, Object> error = new HashMap<>();
-        error.put("success", false);
-        error.put("error", message);
-        objectMapper.writeValue(resp.getWriter(), error);
-    }
 }
\ No newline at end of file
@@ -1,33 +1,20 @@
 package com.mealscan.servlet;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mealscan.auth.AuthFilter;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 public class LogoutServlet extends HttpServlet {
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
         
-        HttpSession session = req.getSession(false);
-        if (session != null) {
-            session.invalidate();
-        }
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", true);
-        response.put("message", "Logged out successfully");
+        AuthFilter.signOut(req, resp);
         
-        resp.setStatus(200);
-        objectMapper.writeValue(resp.getWriter(), response);
+        Json.write(resp, 200, new Responses.Message("Logged out successfully"));
     }
 }
\ No newline at end of file
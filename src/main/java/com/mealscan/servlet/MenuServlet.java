@@ -0,0 +1,82 @@
+package com.mealscan.servlet;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.mealscan.auth.UserPrincipal;
+import com.mealscan.dao.MenuDAO;
+import com.mealscan.model.MenuSlot;
+import com.mealscan.model.MenuValidator;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+// A contractor's menu, read and replaced as a whole. Scans take meal type, items and price from it.
+public class MenuServlet extends HttpServlet {
+    
+    private static final TypeReference<List<Map<String, Object>>> SLOT_LIST = new TypeReference<>() {};
+    
+    private final MenuDAO menuDAO = new MenuDAO();
+    
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        
+        UserPrincipal principal = contractor(req, resp);
+        if (principal == null) {
+            return;
+        }
+        
+        try {
+            Json.write(resp, 200, new Responses.Menu(menuDAO.getMenu(principal.userId())));
+        } catch (Exception e) {
+            e.printStackTrace();
+            Json.error(resp, 500, "Failed to load menu: " + e.getMessage());
+        }
+    }
+    
+    @Override
+    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        
+        UserPrincipal principal = contractor(req, resp);
+        if (principal == null) {
+            return;
+        }
+        
+        List<MenuSlot> slots;
+        try {
+            slots = MenuValidator.fromRequest(Json.MAPPER.readValue(req.getInputStream(), SLOT_LIST), principal.userId());
+        } catch (IllegalArgumentException e) {
+            Json.error(resp, 400, e.getMessage());
+            return;
+        } catch (IOException e) {
+            Json.error(resp, 400, "Expected a JSON array of menu slots");
+            return;
+        }
+        
+        try {
+            Json.write(resp, 200, new Responses.Menu(menuDAO.replaceMenu(principal.userId(), slots)));
+        } catch (Exception e) {
+            e.printStackTrace();
+            Json.error(resp, 500, "Failed to save menu: " + e.getMessage());
+        }
+    }
+    
+    private UserPrincipal contractor(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        UserPrincipal principal = UserPrincipal.from(req);
+        if (principal == null) {
+            Json.error(resp, 401, "Unauthorized");
+            return null;
+        }
+        
+        String userRole = principal.role();
+        if (!"MESS_CONTRACTOR".equals(userRole) && !"CANTEEN_CONTRACTOR".equals(userRole)) {
+            Json.error(resp, 403, "Only contractors have a menu");
+            return null;
+        }
+        return principal;
+    }
+}
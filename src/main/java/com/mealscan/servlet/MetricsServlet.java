@@ -0,0 +1,67 @@
+package com.mealscan.servlet;
+
+import com.mealscan.auth.AuthExecutor;
+import com.mealscan.config.DatabaseInitializer;
+import com.mealscan.config.Settings;
+import com.mealscan.dao.DuplicateScans;
+import com.mealscan.dao.RecordIngestQueue;
+import com.mealscan.dao.UploadKeys;
+import com.mealscan.dao.UserDAO;
+import com.mealscan.metrics.Metrics;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+// Prometheus text exposition of the request and DAO histograms plus the pool, user cache and login
+// executor stats. Scrapers cannot log in, so the endpoint is guarded by its own bearer token,
+// mealscan.metrics.token. Without one it answers 404, unless mealscan.metrics.open=true opts in to
+// serving it unauthenticated.
+public class MetricsServlet extends HttpServlet {
+    
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    
+    private final UserDAO userDAO = new UserDAO();
+    private final byte[] token = tokenBytes(Settings.stringValue("mealscan.metrics.token", "MEALSCAN_METRICS_TOKEN", null));
+    private final boolean open = "true".equalsIgnoreCase(Settings.stringValue("mealscan.metrics.open", "MEALSCAN_METRICS_OPEN", "false"));
+    
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (token != null) {
+            String header = req.getHeader("Authorization");
+            byte[] presented = header != null && header.startsWith("Bearer ") ? tokenBytes(header.substring(7).trim()) : null;
+            if (presented == null || !MessageDigest.isEqual(token, presented)) {
+                Json.error(resp, 401, "Unauthorized");
+                return;
+            }
+        } else if (!open) {
+            Json.error(resp, 404, "Not found");
+            return;
+        }
+        
+        StringBuilder out = new StringBuilder(16_384);
+        Metrics.write(out);
+        Metrics.writeSnapshot(out, "mealscan_db_pool", DatabaseInitializer.getPoolMetrics().snapshot());
+        Metrics.writeSnapshot(out, "mealscan_user_cache", userDAO.getCache().snapshot());
+        out.append("# TYPE mealscan_auth_queue_depth gauge\n");
+        out.append("mealscan_auth_queue_depth ").append(AuthExecutor.getQueueDepth()).append('\n');
+        out.append("# TYPE mealscan_auth_rejected_total counter\n");
+        out.append("mealscan_auth_rejected_total ").append(AuthExecutor.getRejectedCount()).append('\n');
+        out.append("# TYPE mealscan_live_subscribers gauge\n");
+        out.append("mealscan_live_subscribers ").append(LiveEvents.subscriberCount()).append('\n');
+        Metrics.writeSnapshot(out, "mealscan_ingest", RecordIngestQueue.snapshot());
+        Metrics.writeSnapshot(out, "mealscan_upload_keys", UploadKeys.snapshot());
+        Metrics.writeSnapshot(out, "mealscan_duplicate_scans", DuplicateScans.snapshot());
+        
+        resp.setStatus(200);
+        resp.setContentType(CONTENT_TYPE);
+        resp.getOutputStream().write(out.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static byte[] tokenBytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,71 @@
+package com.mealscan.servlet;
+
+import com.mealscan.auth.UserPrincipal;
+import com.mealscan.dao.RecordDAO;
+import com.mealscan.model.RecordChangeSet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+// Records added and deleted after a watermark, for dashboards that keep a local copy. The first
+// page of /api/records carries the watermark to start from; a contractor sees their uploads and a
+// student their own records of both types.
+public class RecordChangesServlet extends HttpServlet {
+    
+    private static final int DEFAULT_LIMIT = 500;
+    private static final int MAX_LIMIT = 1000;
+    
+    private final RecordDAO recordDAO = new RecordDAO();
+    
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        
+        UserPrincipal principal = UserPrincipal.from(req);
+        if (principal == null) {
+            Json.error(resp, 401, "Unauthorized");
+            return;
+        }
+        
+        long since;
+        int limit;
+        try {
+            String sinceStr = req.getParameter("since");
+            if (sinceStr == null || sinceStr.isEmpty()) {
+                Json.error(resp, 400, "since parameter required");
+                return;
+            }
+            since = Long.parseLong(sinceStr);
+            String limitStr = req.getParameter("limit");
+            limit = limitStr == null || limitStr.isEmpty() ? DEFAULT_LIMIT : Integer.parseInt(limitStr);
+            if (since < 0 || limit < 1 || limit > MAX_LIMIT) {
+                Json.error(resp, 400, "since must be at least 0 and limit between 1 and " + MAX_LIMIT);
+                return;
+            }
+        } catch (NumberFormatException e) {
+            Json.error(resp, 400, "Invalid parameters: " + e.getMessage());
+            return;
+        }
+        
+        try {
+            String userRole = principal.role();
+            RecordChangeSet changes;
+            if ("STUDENT".equals(userRole)) {
+                changes = recordDAO.getChangesForStudent(principal.userId(), since, limit);
+            } else if ("MESS_CONTRACTOR".equals(userRole) || "CANTEEN_CONTRACTOR".equals(userRole)) {
+                changes = recordDAO.getChangesForContractor(principal.userId(), since, limit);
+            } else {
+                Json.error(resp, 403, "Invalid role");
+                return;
+            }
+            
+            Json.write(resp, 200, Responses.RecordChanges.of(changes));
+            
+        } catch (Exception e) {
+            e.printStackTrace();
+            Json.error(resp, 500, "Failed to fetch record changes: " + e.getMessage());
+        }
+    }
+}
@@ -1,80 +1,97 @@
 package com.mealscan.servlet;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.mealscan.auth.UserPrincipal;
 import com.mealscan.dao.RecordDAO;
 import com.mealscan.model.Record;
+import com.mealscan.model.RecordCursor;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 public class RecordServlet extends HttpServlet {
     
-    private final RecordDAO recordDAO = new RecordDAO();
-    private final ObjectMapper objectMapper;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
     
-    public RecordServlet() {
-        objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-    }
+    private final RecordDAO recordDAO = new RecordDAO();
     
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
         
-        HttpSession session = req.getSession(false);
-        if (session == null || session.getAttribute("userId") == null) {
-            sendError(resp, "Unauthorized", 401);
+        UserPrincipal principal = UserPrincipal.from(req);
+        if (principal == null) {
+            Json.error(resp, 401, "Unauthorized");
             return;
         }
         
         try {
-            int userId = (int) session.getAttribute("userId");
-            String userRole = (String) session.getAttribute("userRole");
+            int userId = principal.userId();
+            String userRole = principal.role();
             String type = req.getParameter("type");
             
-            List<Record> records;
+            int limit = parseLimit(req.getParameter("limit"));
+            String cursorParam = req.getParameter("cursor");
+            RecordCursor cursor = cursorParam == null || cursorParam.isEmpty() ? null : RecordCursor.decode(cursorParam);
+            
+            Record.RecordType recordType = null;
             
             if ("STUDENT".equals(userRole)) {
                 if (type == null || type.isEmpty()) {
-                    sendError(resp, "Type parameter required (MESS or CANTEEN)", 400);
+                    Json.error(resp, 400, "Type parameter required (MESS or CANTEEN)");
                     return;
                 }
-                Record.RecordType recordType = Record.RecordType.valueOf(type.toUpperCase());
-                records = recordDAO.getRecordsByStudentAndType(userId, recordType);
+                recordType = Record.RecordType.valueOf(type.toUpperCase());
                 
-            } else if ("MESS_CONTRACTOR".equals(userRole) || "CANTEEN_CONTRACTOR".equals(userRole)) {
-                records = recordDAO.getRecordsByContractor(userId);
-                
-            } else {
-                sendError(resp, "Invalid role", 403);
+            } else if (!"MESS_CONTRACTOR".equals(userRole) && !"CANTEEN_CONTRACTOR".equals(userRole)) {
+                Json.error(resp, 403, "Invalid role");
                 return;
             }
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("records", records);
+            // Taken before the read, so /api/records/changes from here on covers anything the page misses.
+            long watermark = cursor == null ? recordDAO.getChangeWatermark() : -1;
             
             resp.setStatus(200);
-            objectMapper.writeValue(resp.getWriter(), response);
+            JsonGenerator generator = Json.generator(resp);
+            StreamingRecordWriter writer = new StreamingRecordWriter(generator, limit);
+            
+            generator.writeStartObject();
+            generator.writeBooleanField("success", true);
+            generator.writeArrayFieldStart("records");
             
+            if (recordType != null) {
+                recordDAO.streamRecordsByStudentAndType(userId, recordType, cursor, limit + 1, writer);
+            } else {
+                recordDAO.streamRecordsByContractor(userId, cursor, limit + 1, writer);
+            }
+            
+            generator.writeEndArray();
+            generator.writeStringField("nextCursor", writer.getNextCursor());
+            if (watermark >= 0) {
+                generator.writeNumberField("watermark", watermark);
+            }
+            generator.writeEndObject();
+            generator.close();
+            
+        } catch (IllegalArgumentException e) {
+            Json.error(resp, 400, "Invalid parameters: " + e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
-            sendError(resp, "Failed to fetch records: " + e.getMessage(), 500);
+            Json.error(resp, 500, "Failed to fetch records: " + e.getMessage());
         }
     }
     
-    private void sendError(HttpServletResponse resp, String message, int status) throws IOException {
-        resp.setStatus(status);
-        Map<String, Object> error = new HashMap<>();
-        error.put("success", false);
-        error.put("error", message);
-        objectMapper.writeValue(resp.getWriter(), error);
+    private int parseLimit(String limitStr) {
+        if (limitStr == null || limitStr.isEmpty()) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        int limit = Integer.parseInt(limitStr);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return limit;
     }
 }
\ No newline at end of file
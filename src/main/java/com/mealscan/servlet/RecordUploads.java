@@ -0,0 +1,135 @@
+package com.mealscan.servlet;
+
+import com.mealscan.dao.DuplicateScans;
+import com.mealscan.dao.UploadKeys;
+import com.mealscan.model.Record;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// The write path behind single uploads and check-in scans, once the servlet has a valid record:
+// duplicate check, Idempotency-Key replay and the ingest queue's group commit. The record joins
+// the next group commit and the response is written once that group has committed, back on a
+// container thread so the writer never waits on a client. An upload whose group has not committed
+// within ACK_TIMEOUT_MS is answered 503; it may still commit, and a retry with the same
+// Idempotency-Key then replays it.
+final class RecordUploads {
+    
+    private static final int RETRY_AFTER_SECONDS = 1;
+    // Longer than one group commit that has to wait out the pool's connection timeout.
+    private static final long ACK_TIMEOUT_MS = 10_000;
+    
+    private RecordUploads() {}
+    
+    // The request's Idempotency-Key, or null when it has none.
+    static String idempotencyKey(HttpServletRequest req) {
+        String key = req.getHeader("Idempotency-Key");
+        if (key != null && !UploadKeys.isValidKey(key)) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + UploadKeys.MAX_KEY_LENGTH +
+                                               " printable ASCII characters");
+        }
+        return key;
+    }
+    
+    static void submit(HttpServletRequest req, HttpServletResponse resp, Record record,
+                       String idempotencyKey) throws IOException {
+        // A retry answered from memory skips the check: its slot is taken by its own first upload.
+        Integer duplicateOf = null;
+        if (idempotencyKey == null || !UploadKeys.isRecent(record.getContractorId(), idempotencyKey)) {
+            try {
+                duplicateOf = DuplicateScans.findDuplicate(record, idempotencyKey);
+            } catch (Exception e) {
+                e.printStackTrace();
+                Json.error(resp, 500, "Failed to upload record: " + e.getMessage());
+                return;
+            }
+            if (duplicateOf != null && DuplicateScans.rejects()) {
+                Json.error(resp, 409, "Student already has a " + record.getMealType() + " record for " +
+                                      record.getRecordDate() + " (record " + duplicateOf + ")");
+                return;
+            }
+        }
+        
+        AsyncContext async = req.startAsync();
+        async.setTimeout(ACK_TIMEOUT_MS);
+        // Whichever of the commit and the timeout comes first writes the response.
+        AtomicBoolean answered = new AtomicBoolean();
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (answered.compareAndSet(false, true)) {
+                    resp.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+                    Json.error(resp, 503, "Upload is taking too long, please retry shortly");
+                    async.complete();
+                }
+            }
+            
+            @Override
+            public void onComplete(AsyncEvent event) {}
+            
+            @Override
+            public void onError(AsyncEvent event) {}
+            
+            @Override
+            public void onStartAsync(AsyncEvent event) {}
+        });
+        
+        Integer flagged = duplicateOf;
+        try {
+            UploadKeys.submit(record, idempotencyKey).whenComplete((upload, failure) -> {
+                if (!answered.compareAndSet(false, true)) {
+                    // Already answered 503, but live clients still hear about a record that did commit.
+                    if (failure == null && !upload.replayed()) {
+                        LiveEvents.recordsCreated(List.of(upload.record()));
+                    }
+                    return;
+                }
+                async.start(() -> {
+                    try {
+                        respond(resp, upload, flagged, failure);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    } finally {
+                        async.complete();
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            answered.set(true);
+            resp.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+            Json.error(resp, 503, "Too many uploads in progress, please retry shortly");
+            async.complete();
+        }
+    }
+    
+    private static void respond(HttpServletResponse resp, UploadKeys.Upload upload, Integer duplicateOf,
+                                Throwable failure) throws IOException {
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            if (cause instanceof UploadKeys.KeyConflictException) {
+                Json.error(resp, 422, cause.getMessage());
+                return;
+            }
+            cause.printStackTrace();
+            Json.error(resp, 500, "Failed to upload record: " + cause.getMessage());
+            return;
+        }
+        
+        if (upload.replayed()) {
+            resp.setHeader("Idempotent-Replayed", "true");
+            duplicateOf = null;
+        } else {
+            LiveEvents.recordsCreated(List.of(upload.record()));
+        }
+        
+        Json.write(resp, 201, new Responses.RecordUploaded(upload.record(), duplicateOf));
+    }
+}
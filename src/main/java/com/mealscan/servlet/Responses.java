@@ -0,0 +1,114 @@
+package com.mealscan.servlet;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mealscan.dao.StatsDAO;
+import com.mealscan.model.ImportJob;
+import com.mealscan.model.MenuSlot;
+import com.mealscan.model.Record;
+import com.mealscan.model.RecordChangeSet;
+import com.mealscan.model.User;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Response bodies, one record per shape. Every servlet answers with one of these through Json.
+final class Responses {
+    
+    private Responses() {}
+    
+    record Failure(boolean success, String error) {
+        Failure(String error) {
+            this(false, error);
+        }
+    }
+    
+    record Message(boolean success, String message) {
+        Message(String message) {
+            this(true, message);
+        }
+    }
+    
+    record UserSummary(int id, String email, String name, String role) {
+        static UserSummary of(User user) {
+            return new UserSummary(user.getId(), user.getEmail(), user.getName(), user.getRole().name());
+        }
+    }
+    
+    // token is only present in token auth mode.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record LoggedIn(boolean success, UserSummary user, String token) {
+        LoggedIn(User user, String token) {
+            this(true, UserSummary.of(user), token);
+        }
+    }
+    
+    record Registered(boolean success, String message, UserSummary user) {
+        Registered(User user) {
+            this(true, "Registration successful", UserSummary.of(user));
+        }
+    }
+    
+    record Student(int id, String name, String email) {}
+    
+    record StudentList(boolean success, List<Student> students) {
+        static StudentList of(List<User> users) {
+            return new StudentList(true, users.stream()
+                .map(user -> new Student(user.getId(), user.getName(), user.getEmail()))
+                .toList());
+        }
+    }
+    
+    record Stats(boolean success, StatsDAO.ContractorStats stats) {
+        Stats(StatsDAO.ContractorStats stats) {
+            this(true, stats);
+        }
+    }
+    
+    // duplicateOf is only present when the student already had a record for that meal and day.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record RecordUploaded(boolean success, String message, Record record, Integer duplicateOf) {
+        RecordUploaded(Record record, Integer duplicateOf) {
+            this(true, "Record uploaded successfully", record, duplicateOf);
+        }
+    }
+    
+    record Menu(boolean success, List<MenuSlot> slots) {
+        Menu(List<MenuSlot> slots) {
+            this(true, slots);
+        }
+    }
+    
+    record RecordChanges(boolean success, List<Record> upserts, List<RecordChangeSet.Deletion> deletes,
+                         long watermark, boolean hasMore) {
+        static RecordChanges of(RecordChangeSet changes) {
+            return new RecordChanges(true, changes.upserts(), changes.deletes(), changes.watermark(), changes.hasMore());
+        }
+    }
+    
+    record ItemError(int index, String error) {}
+    
+    record BatchRejected(boolean success, String error, List<ItemError> errors) {
+        BatchRejected(String error, List<ItemError> errors) {
+            this(false, error, errors);
+        }
+    }
+    
+    record BatchUploaded(boolean success, String message, int count, List<Integer> ids) {
+        BatchUploaded(List<Integer> ids) {
+            this(true, ids.size() + " records uploaded successfully", ids.size(), ids);
+        }
+    }
+    
+    record RowError(long row, String error) {}
+    
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record ImportSummary(boolean success, String error, int jobId, String status, long rowsCommitted,
+                         long recordsImported, long rowsRejected, List<RowError> errors) {
+        static ImportSummary of(ImportJob job, String error, List<RowError> errors) {
+            return new ImportSummary(error == null, error, job.getId(), job.getStatus().name(), job.getRowsCommitted(),
+                                     job.getRecordsImported(), job.getRowsRejected(), errors);
+        }
+    }
+    
+    record BillSummary(boolean success, BigDecimal total, int recordCount, int month, int year, String type) {}
+}
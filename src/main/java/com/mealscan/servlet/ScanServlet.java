@@ -0,0 +1,92 @@
+package com.mealscan.servlet;
+
+import com.mealscan.auth.UserPrincipal;
+import com.mealscan.dao.MenuDAO;
+import com.mealscan.dao.UserDAO;
+import com.mealscan.model.MenuSlot;
+import com.mealscan.model.Record;
+import com.mealscan.model.RecordValidator;
+import com.mealscan.model.User;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+// Check-in at the counter: the contractor sends only the student, and meal type, items and price
+// come from the slot of their menu serving right now. Up to the queue everything it reads is
+// normally in memory: the menu, the student through the user cache, and today's duplicate filter.
+public class ScanServlet extends HttpServlet {
+    
+    private static final DateTimeFormatter CLOCK = DateTimeFormatter.ofPattern("HH:mm");
+    
+    private final UserDAO userDAO = new UserDAO();
+    private final MenuDAO menuDAO = new MenuDAO();
+    
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        
+        UserPrincipal principal = UserPrincipal.from(req);
+        if (principal == null) {
+            Json.error(resp, 401, "Unauthorized");
+            return;
+        }
+        
+        String userRole = principal.role();
+        if (!"MESS_CONTRACTOR".equals(userRole) && !"CANTEEN_CONTRACTOR".equals(userRole)) {
+            Json.error(resp, 403, "Only contractors can scan students");
+            return;
+        }
+        
+        String idempotencyKey;
+        int studentId;
+        try {
+            idempotencyKey = RecordUploads.idempotencyKey(req);
+            
+            @SuppressWarnings("unchecked")
+            Map<String, Object> data = Json.read(req, Map.class);
+            if (!(data.get("studentId") instanceof Integer id)) {
+                Json.error(resp, 400, "Student ID is required");
+                return;
+            }
+            studentId = id;
+        } catch (IllegalArgumentException e) {
+            Json.error(resp, 400, e.getMessage());
+            return;
+        } catch (IOException e) {
+            Json.error(resp, 400, "Invalid scan request");
+            return;
+        }
+        
+        Record record;
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            MenuSlot slot = menuDAO.findActiveSlot(principal.userId(), now.toLocalTime());
+            if (slot == null) {
+                Json.error(resp, 409, "No menu slot is being served at " + now.format(CLOCK));
+                return;
+            }
+            
+            User student = userDAO.findById(studentId);
+            if (student == null || student.getRole() != User.UserRole.STUDENT) {
+                Json.error(resp, 404, "Student not found");
+                return;
+            }
+            
+            record = RecordValidator.create(studentId, principal.userId(), RecordValidator.typeForRole(userRole),
+                                            slot.mealType(), slot.items(), slot.cost(), now.toLocalDate());
+            record.setStudentName(student.getName());
+            
+        } catch (Exception e) {
+            e.printStackTrace();
+            Json.error(resp, 500, "Failed to record scan: " + e.getMessage());
+            return;
+        }
+        
+        RecordUploads.submit(req, resp, record, idempotencyKey);
+    }
+}
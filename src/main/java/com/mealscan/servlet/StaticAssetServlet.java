@@ -0,0 +1,141 @@
+package com.mealscan.servlet;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.util.resource.Resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Serves the webapp pages from memory. Every file is read and gzipped once, at the highest level,
+// when the servlet starts; a request then only picks the variant the client accepts. Edits to the
+// pages need a restart to show up.
+public class StaticAssetServlet extends HttpServlet {
+    
+    private static final String WELCOME_FILE = "index.html";
+    // The page names carry no content hash, so browsers must revalidate; an unchanged page costs a 304.
+    private static final String CACHE_CONTROL = "no-cache";
+    
+    private record Asset(String contentType, byte[] identity, byte[] gzip, String etag, String gzipEtag) {}
+    
+    private final Resource base;
+    private final Map<String, Asset> assets = new HashMap<>();
+    
+    public StaticAssetServlet(Resource base) {
+        this.base = base;
+    }
+    
+    @Override
+    public void init() throws ServletException {
+        try {
+            load(base, "/");
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new ServletException("Failed to load static assets", e);
+        }
+        long identityBytes = assets.values().stream().mapToLong(asset -> asset.identity().length).sum();
+        long gzipBytes = assets.values().stream()
+            .mapToLong(asset -> asset.gzip() != null ? asset.gzip().length : asset.identity().length).sum();
+        System.out.println("Loaded " + assets.size() + " static assets: " + identityBytes + " bytes, " +
+                           gzipBytes + " gzipped");
+    }
+    
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String path = req.getServletPath() + (req.getPathInfo() != null ? req.getPathInfo() : "");
+        Asset asset = assets.get(path.endsWith("/") ? path + WELCOME_FILE : path);
+        if (asset == null) {
+            resp.sendError(404);
+            return;
+        }
+        
+        boolean gzip = asset.gzip() != null && acceptsGzip(req.getHeader("Accept-Encoding"));
+        String etag = gzip ? asset.gzipEtag() : asset.etag();
+        if (asset.gzip() != null) {
+            resp.setHeader("Vary", "Accept-Encoding");
+        }
+        resp.setHeader("ETag", etag);
+        resp.setHeader("Cache-Control", CACHE_CONTROL);
+        if (ETags.matches(req.getHeader("If-None-Match"), etag)) {
+            resp.setStatus(304);
+            return;
+        }
+        
+        byte[] body = gzip ? asset.gzip() : asset.identity();
+        resp.setContentType(asset.contentType());
+        if (gzip) {
+            resp.setHeader("Content-Encoding", "gzip");
+        }
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+    
+    private void load(Resource dir, String prefix) throws IOException, NoSuchAlgorithmException {
+        for (String name : dir.list()) {
+            Resource child = dir.addPath(name);
+            if (child.isDirectory()) {
+                load(child, prefix + (name.endsWith("/") ? name : name + "/"));
+                continue;
+            }
+            byte[] identity;
+            try (InputStream in = child.getInputStream()) {
+                identity = in.readAllBytes();
+            }
+            String contentType = getServletContext().getMimeType(name);
+            assets.put(prefix + name, toAsset(contentType != null ? contentType : "application/octet-stream", identity));
+        }
+    }
+    
+    private static Asset toAsset(String contentType, byte[] identity) throws IOException, NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(identity);
+        String hash = Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22);
+        
+        byte[] gzip = gzip(identity);
+        if (gzip.length >= identity.length) {
+            // Already compressed (images, say); serving the original is smaller.
+            return new Asset(contentType, identity, null, "\"" + hash + "\"", null);
+        }
+        return new Asset(contentType, identity, gzip, "\"" + hash + "\"", "\"" + hash + "-gzip\"");
+    }
+    
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+    
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                if (parts[i].trim().matches("[qQ]=0(\\.0{0,3})?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
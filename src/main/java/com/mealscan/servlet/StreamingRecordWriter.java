@@ -0,0 +1,49 @@
+package com.mealscan.servlet;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.mealscan.dao.RecordHandler;
+import com.mealscan.model.Record;
+import com.mealscan.model.RecordCursor;
+
+import java.math.BigDecimal;
+
+// Writes each row straight into an open JSON array, keeping only the running total and the
+// last written row. Rows beyond the limit are not written; they only mark that more exist.
+class StreamingRecordWriter implements RecordHandler {
+    
+    private final JsonGenerator generator;
+    private final int limit;
+    private int written;
+    private boolean hasMore;
+    private Record last;
+    private BigDecimal total = BigDecimal.ZERO;
+    
+    StreamingRecordWriter(JsonGenerator generator) {
+        this(generator, Integer.MAX_VALUE);
+    }
+    
+    StreamingRecordWriter(JsonGenerator generator, int limit) {
+        this.generator = generator;
+        this.limit = limit;
+    }
+    
+    @Override
+    public void handle(Record record) throws Exception {
+        if (written == limit) {
+            hasMore = true;
+            return;
+        }
+        generator.writeObject(record);
+        total = total.add(record.getCost());
+        last = record;
+        written++;
+    }
+    
+    BigDecimal getTotal() {
+        return total;
+    }
+    
+    String getNextCursor() {
+        return hasMore ? RecordCursor.of(last).encode() : null;
+    }
+}
@@ -0,0 +1,42 @@
+package com.mealscan.dao;
+
+import com.mealscan.model.Record;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BillLedgerDAOTest extends DatabaseTest {
+    
+    private static RecordDAO recordDAO;
+    private static BillLedgerDAO ledgerDAO;
+    
+    @BeforeAll
+    static void createDaos() {
+        recordDAO = new RecordDAO(dataSource());
+        ledgerDAO = new BillLedgerDAO(dataSource());
+    }
+    
+    @Test
+    void versionKeepsRisingWhenARebuildEmptiesAMonth() throws Exception {
+        Record first = recordDAO.createRecord(record("Dinner", "60.00", LocalDate.of(2023, 11, 6)));
+        long afterInsert = version(2023, 11);
+        
+        recordDAO.deleteRecord(first.getId(), CONTRACTOR_ID);
+        ledgerDAO.rebuild();
+        long afterRebuild = version(2023, 11);
+        assertTrue(afterRebuild > afterInsert);
+        assertEquals(BillLedgerDAO.MonthlyTotal.EMPTY.recordCount(),
+                     ledgerDAO.getMonthlyTotal(STUDENT_ID, Record.RecordType.MESS, 2023, 11).recordCount());
+        
+        recordDAO.createRecord(record("Dinner", "60.00", LocalDate.of(2023, 11, 20)));
+        assertTrue(version(2023, 11) > afterRebuild);
+    }
+    
+    private static long version(int year, int month) throws Exception {
+        return ledgerDAO.getVersion(STUDENT_ID, Record.RecordType.MESS, year, month);
+    }
+}
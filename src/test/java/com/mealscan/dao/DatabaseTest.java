@@ -0,0 +1,49 @@
+package com.mealscan.dao;
+
+import com.mealscan.config.DatabaseInitializer;
+import com.mealscan.model.Record;
+import com.mealscan.model.RecordValidator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInfo;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Gives each test class its own migrated in-memory database, named after the class, with the
+// default users: student 1, the mess contractor 2 and the canteen contractor 3.
+abstract class DatabaseTest {
+    
+    static final int STUDENT_ID = 1;
+    static final int CONTRACTOR_ID = 2;
+    static final int CANTEEN_ID = 3;
+    
+    @BeforeAll
+    static void openDatabase(TestInfo info) {
+        String name = info.getTestClass().orElseThrow().getSimpleName();
+        System.setProperty("mealscan.db.url", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        DatabaseInitializer.initialize(2);
+    }
+    
+    @AfterAll
+    static void closeDatabase() {
+        DatabaseInitializer.shutdown();
+        System.clearProperty("mealscan.db.url");
+    }
+    
+    static DataSource dataSource() {
+        return DatabaseInitializer.getDataSource();
+    }
+    
+    // A mess record for the default student.
+    static Record record(String mealType, String cost, LocalDate date) {
+        return record(STUDENT_ID, CONTRACTOR_ID, mealType, cost, date);
+    }
+    
+    static Record record(int studentId, int contractorId, String mealType, String cost, LocalDate date) {
+        Record.RecordType type = contractorId == CANTEEN_ID ? Record.RecordType.CANTEEN : Record.RecordType.MESS;
+        return RecordValidator.create(studentId, contractorId, type, mealType, mealType + " items",
+                                      new BigDecimal(cost), date);
+    }
+}
@@ -0,0 +1,69 @@
+package com.mealscan.dao;
+
+import com.mealscan.model.Record;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DuplicateScansTest extends DatabaseTest {
+    
+    private static RecordDAO recordDAO;
+    
+    @BeforeAll
+    static void createDaos() {
+        recordDAO = new RecordDAO(dataSource());
+    }
+    
+    @Test
+    void scansOutsideTheWindowAreCheckedWithoutCachingAFilter() throws Exception {
+        DuplicateScans.initialize(DuplicateScans.Mode.FLAG, 64);
+        LocalDate today = LocalDate.now();
+        DuplicateScans.preload(today);
+        
+        LocalDate backDated = today.minusDays(90);
+        LocalDate future = today.plusDays(3);
+        Record stored = recordDAO.createRecord(record("Breakfast", "30.00", backDated));
+        recordDAO.createRecord(record("Breakfast", "30.00", future));
+        
+        assertEquals(stored.getId(), DuplicateScans.findDuplicate(record("Breakfast", "30.00", backDated), null));
+        assertNull(DuplicateScans.findDuplicate(record("Breakfast", "30.00", backDated.minusDays(1)), null));
+        assertEquals(1, DuplicateScans.snapshot().get("days"));
+        
+        DuplicateScans.findDuplicate(record("Breakfast", "30.00", future), null);
+        assertEquals(1, DuplicateScans.snapshot().get("days"));
+        
+        DuplicateScans.findDuplicate(record("Breakfast", "30.00", today.minusDays(1)), null);
+        assertEquals(2, DuplicateScans.snapshot().get("days"));
+    }
+    
+    @Test
+    void recordsFromAnotherProcessAreFoundOnceTheFilterExpires() throws Exception {
+        DuplicateScans.initialize(DuplicateScans.Mode.FLAG, 64, Duration.ofMillis(200));
+        LocalDate today = LocalDate.now();
+        DuplicateScans.preload(today);
+        
+        // Written straight to the table, as RecordImportTool in another JVM would, so the filter never hears of it.
+        try (Connection conn = dataSource().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                 "INSERT INTO records (student_id, contractor_id, type, meal_type, items, cost, record_date) " +
+                 "VALUES (?, ?, 'MESS', 'Dinner', 'Dinner items', 60.00, ?)")) {
+            pstmt.setInt(1, STUDENT_ID);
+            pstmt.setInt(2, CONTRACTOR_ID);
+            pstmt.setDate(3, Date.valueOf(today));
+            pstmt.executeUpdate();
+        }
+        assertNull(DuplicateScans.findDuplicate(record("Dinner", "60.00", today), null));
+        
+        Thread.sleep(300);
+        assertNotNull(DuplicateScans.findDuplicate(record("Dinner", "60.00", today), null));
+    }
+}
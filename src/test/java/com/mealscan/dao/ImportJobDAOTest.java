@@ -0,0 +1,66 @@
+package com.mealscan.dao;
+
+import com.mealscan.config.DatabaseInitializer;
+import com.mealscan.model.ImportJob;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImportJobDAOTest extends DatabaseTest {
+    
+    private static final LocalDate CHUNK_DATE = LocalDate.of(2024, 3, 4);
+    
+    private static ImportJobDAO importJobDAO;
+    
+    @BeforeAll
+    static void createDaos() {
+        importJobDAO = new ImportJobDAO(dataSource());
+    }
+    
+    @Test
+    void runningJobCannotBeClaimedAgain() throws Exception {
+        ImportJob job = importJobDAO.createJob(new ImportJob(CONTRACTOR_ID, "register.csv", "CSV"));
+        
+        assertNull(importJobDAO.claimJob(job.getId()));
+        
+        importJobDAO.updateStatus(job, ImportJob.Status.FAILED);
+        assertNotNull(importJobDAO.claimJob(job.getId()));
+        assertNull(importJobDAO.claimJob(job.getId()));
+    }
+    
+    @Test
+    void overlappingRunsCommitAChunkOnce() throws Exception {
+        ImportJob job = importJobDAO.createJob(new ImportJob(CONTRACTOR_ID, "pos.csv", "CSV"));
+        ImportJob first = importJobDAO.findById(job.getId());
+        ImportJob second = importJobDAO.findById(job.getId());
+        
+        importJobDAO.commitChunk(first, List.of(record("Lunch", "50.00", CHUNK_DATE)), 1, 0);
+        
+        assertThrows(ImportJobDAO.CheckpointConflictException.class,
+                     () -> importJobDAO.commitChunk(second, List.of(record("Lunch", "50.00", CHUNK_DATE)), 1, 0));
+        assertEquals(1, importJobDAO.findById(job.getId()).getRecordsImported());
+        assertEquals(1, countRecords(CHUNK_DATE));
+    }
+    
+    private static int countRecords(LocalDate date) throws Exception {
+        try (Connection conn = DatabaseInitializer.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM records WHERE record_date = ?")) {
+            pstmt.setDate(1, Date.valueOf(date));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
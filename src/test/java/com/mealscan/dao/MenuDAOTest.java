@@ -0,0 +1,35 @@
+package com.mealscan.dao;
+
+import com.mealscan.model.MenuSlot;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MenuDAOTest extends DatabaseTest {
+    
+    private static MenuDAO menuDAO;
+    private static UserDAO userDAO;
+    
+    @BeforeAll
+    static void createDaos() {
+        menuDAO = new MenuDAO(dataSource());
+        userDAO = new UserDAO(dataSource());
+    }
+    
+    @Test
+    void deletedContractorsMenuIsNotServedFromCache() throws Exception {
+        MenuSlot brunch = new MenuSlot(0, CONTRACTOR_ID, "Brunch", "Poha, Chai", new BigDecimal("45.00"),
+                                       LocalTime.of(9, 0), LocalTime.of(11, 0));
+        menuDAO.replaceMenu(CONTRACTOR_ID, List.of(brunch));
+        assertEquals("Brunch", new MenuDAO(dataSource()).getMenu(CONTRACTOR_ID).get(0).mealType());
+        
+        assertTrue(userDAO.deleteUser(CONTRACTOR_ID));
+        assertTrue(menuDAO.getMenu(CONTRACTOR_ID).isEmpty());
+    }
+}
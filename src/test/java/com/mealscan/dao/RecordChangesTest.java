@@ -0,0 +1,104 @@
+package com.mealscan.dao;
+
+import com.mealscan.model.Record;
+import com.mealscan.model.RecordChangeSet;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordChangesTest extends DatabaseTest {
+    
+    private static final LocalDate DATE = LocalDate.of(2024, 9, 2);
+    
+    private static RecordDAO recordDAO;
+    
+    @BeforeAll
+    static void createDaos() {
+        recordDAO = new RecordDAO(dataSource());
+    }
+    
+    @Test
+    void pagesMergeInsertsAndDeletesInSequenceOrder() throws Exception {
+        long since = recordDAO.getChangeWatermark();
+        Record first = recordDAO.createRecord(record(STUDENT_ID, CANTEEN_ID, "Snacks", "20.00", DATE));
+        Record second = recordDAO.createRecord(record(STUDENT_ID, CANTEEN_ID, "Tea", "10.00", DATE));
+        Record third = recordDAO.createRecord(record(STUDENT_ID, CANTEEN_ID, "Lunch", "45.00", DATE));
+        recordDAO.deleteRecord(second.getId(), CANTEEN_ID);
+        
+        RecordChangeSet page = recordDAO.getChangesForContractor(CANTEEN_ID, since, 2);
+        assertEquals(List.of(first.getId(), third.getId()), ids(page));
+        assertTrue(page.deletes().isEmpty());
+        assertTrue(page.hasMore());
+        
+        RecordChangeSet rest = recordDAO.getChangesForContractor(CANTEEN_ID, page.watermark(), 2);
+        assertTrue(rest.upserts().isEmpty());
+        assertEquals(List.of(new RecordChangeSet.Deletion(second.getId(), Record.RecordType.CANTEEN)), rest.deletes());
+        assertFalse(rest.hasMore());
+        
+        RecordChangeSet none = recordDAO.getChangesForContractor(CANTEEN_ID, rest.watermark(), 2);
+        assertTrue(none.upserts().isEmpty() && none.deletes().isEmpty());
+    }
+    
+    @Test
+    void lateCommittingWriterIsNotSkipped() throws Exception {
+        long since = recordDAO.getChangeWatermark();
+        Record late = record("Lunch", "50.00", DATE);
+        Record early;
+        RecordChangeSet before;
+        
+        try (Connection conn = dataSource().getConnection();
+             RecordChangeLog changes = RecordChangeLog.begin(conn)) {
+            conn.setAutoCommit(false);
+            recordDAO.insertRecords(conn, changes, List.of(late));
+            
+            // Another month, so it does not wait on the ledger rows the late writer holds.
+            early = recordDAO.createRecord(record("Dinner", "60.00", DATE.plusMonths(1)));
+            before = recordDAO.getChangesForContractor(CONTRACTOR_ID, since, 10);
+            assertTrue(before.upserts().isEmpty());
+            
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+        
+        RecordChangeSet after = recordDAO.getChangesForContractor(CONTRACTOR_ID, before.watermark(), 10);
+        assertEquals(List.of(late.getId(), early.getId()), ids(after));
+    }
+    
+    // What a CLI tool writing over AUTO_SERVER leaves behind while its transaction is open.
+    @Test
+    void floorOpenedByAnotherProcessHoldsTheWatermark() throws Exception {
+        long since = recordDAO.getChangeWatermark();
+        long floor = since + 1;
+        execute("INSERT INTO open_change_floors (floor) VALUES (" + floor + ")");
+        try {
+            recordDAO.createRecord(record("Breakfast", "30.00", DATE));
+            assertEquals(floor - 1, recordDAO.getChangeWatermark());
+        } finally {
+            execute("DELETE FROM open_change_floors WHERE floor = " + floor);
+        }
+        assertTrue(recordDAO.getChangeWatermark() > floor);
+        
+        // One abandoned by a process that died is ignored.
+        execute("INSERT INTO open_change_floors (floor, opened_at) VALUES (" + floor + ", DATEADD('HOUR', -1, CURRENT_TIMESTAMP))");
+        assertTrue(recordDAO.getChangeWatermark() > floor);
+    }
+    
+    private static List<Integer> ids(RecordChangeSet changes) {
+        return changes.upserts().stream().map(Record::getId).toList();
+    }
+    
+    private static void execute(String sql) throws Exception {
+        try (Connection conn = dataSource().getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.mealscan.dao;
+
+import com.mealscan.model.Record;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The writer is held on its first group until the rest of the uploads are queued behind it, so
+// they are committed as one group.
+class RecordIngestQueueTest {
+    
+    private static final LocalDate DATE = LocalDate.of(2024, 5, 6);
+    private static final int UNKNOWN_STUDENT = 99;
+    
+    @Test
+    void groupWithABadRecordIsRetriedOneByOne() throws Exception {
+        StubDAO dao = new StubDAO(new SQLException("Referential integrity constraint violation", "23506"));
+        RecordIngestQueue queue = new RecordIngestQueue(16, 16, dao);
+        try {
+            CompletableFuture<Record> first = queue.enqueue(record(1), null);
+            dao.firstCall.await(5, TimeUnit.SECONDS);
+            Record good = record(1);
+            Record other = record(1);
+            CompletableFuture<Record> before = queue.enqueue(good, null);
+            CompletableFuture<Record> bad = queue.enqueue(record(UNKNOWN_STUDENT), null);
+            CompletableFuture<Record> after = queue.enqueue(other, null);
+            dao.release.countDown();
+            
+            first.get(5, TimeUnit.SECONDS);
+            assertSame(good, before.get(5, TimeUnit.SECONDS));
+            assertSame(other, after.get(5, TimeUnit.SECONDS));
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(SQLException.class, failure.getCause());
+            assertEquals(List.of(1, 3, 1, 1, 1), dao.groupSizes);
+        } finally {
+            queue.stop();
+        }
+    }
+    
+    @Test
+    void groupFailsAtOnceWhenTheDatabaseIsUnavailable() throws Exception {
+        StubDAO dao = new StubDAO(new SQLTransientConnectionException("Connection is not available, request timed out"));
+        dao.failAll = true;
+        RecordIngestQueue queue = new RecordIngestQueue(16, 16, dao);
+        try {
+            CompletableFuture<Record> first = queue.enqueue(record(1), null);
+            dao.firstCall.await(5, TimeUnit.SECONDS);
+            List<CompletableFuture<Record>> group = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                group.add(queue.enqueue(record(1), null));
+            }
+            dao.release.countDown();
+            
+            assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            for (CompletableFuture<Record> upload : group) {
+                ExecutionException failure = assertThrows(ExecutionException.class, () -> upload.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(SQLTransientConnectionException.class, failure.getCause());
+            }
+            assertEquals(List.of(1, 3), dao.groupSizes);
+        } finally {
+            queue.stop();
+        }
+    }
+    
+    private static Record record(int studentId) {
+        return DatabaseTest.record(studentId, DatabaseTest.CONTRACTOR_ID, "Lunch", "50.00", DATE);
+    }
+    
+    // Fails any group holding the unknown student, or every group when failAll is set.
+    private static final class StubDAO extends RecordDAO {
+        private final SQLException failure;
+        private final CountDownLatch firstCall = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<Integer> groupSizes = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean failAll;
+        
+        StubDAO(SQLException failure) {
+            super(null);
+            this.failure = failure;
+        }
+        
+        @Override
+        List<Record> createRecords(List<Record> records, List<String> idempotencyKeys) throws Exception {
+            groupSizes.add(records.size());
+            if (firstCall.getCount() > 0) {
+                firstCall.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            if (failAll || records.stream().anyMatch(r -> r.getStudentId() == UNKNOWN_STUDENT)) {
+                throw failure;
+            }
+            return records;
+        }
+    }
+}
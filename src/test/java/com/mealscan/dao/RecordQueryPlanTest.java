@@ -0,0 +1,87 @@
+package com.mealscan.dao;
+
+import com.mealscan.config.DatabaseInitializer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// H2 names the index it scans in a comment after the table, followed by the conditions that
+// bound the scan; a condition only filtered after the lookup is not listed there.
+class RecordQueryPlanTest extends DatabaseTest {
+    
+    @BeforeAll
+    static void seedRecords() throws Exception {
+        // The planner costs indexes from table statistics, so give it a few years of records.
+        try (Connection conn = DatabaseInitializer.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                INSERT INTO records (student_id, contractor_id, type, meal_type, items, cost, record_date)
+                SELECT 1, 2 + MOD(X, 2), CASE MOD(X, 2) WHEN 0 THEN 'MESS' ELSE 'CANTEEN' END,
+                       'Lunch', 'Rice, Dal', 50.00, DATEADD('DAY', -MOD(X, 1000), CURRENT_DATE)
+                FROM SYSTEM_RANGE(1, 5000)
+            """);
+            stmt.execute("ANALYZE");
+        }
+    }
+    
+    @Test
+    void monthlyBillScansStudentTypeDateRange() throws Exception {
+        String scan = recordsScan(RecordDAO.MONTHLY_BILL_SQL);
+        
+        assertTrue(scan.contains("IDX_RECORDS_STUDENT_TYPE_DATE"), scan);
+        assertTrue(scan.contains("RECORD_DATE >= ?3"), scan);
+        assertTrue(scan.contains("RECORD_DATE < ?4"), scan);
+    }
+    
+    @Test
+    void contractorListingReadsContractorDateIndexInOrder() throws Exception {
+        String sql = RecordDAO.contractorListingSql(false);
+        String scan = recordsScan(sql);
+        
+        assertTrue(scan.contains("IDX_RECORDS_CONTRACTOR_DATE"), scan);
+        assertTrue(plan(sql).contains("/* index sorted */"), plan(sql));
+    }
+    
+    @Test
+    void contractorListingPageSeeksPastCursorDate() throws Exception {
+        String sql = RecordDAO.contractorListingSql(true);
+        String scan = recordsScan(sql);
+        
+        assertTrue(scan.contains("IDX_RECORDS_CONTRACTOR_DATE"), scan);
+        assertTrue(scan.contains("RECORD_DATE <= ?2"), scan);
+        assertTrue(plan(sql).contains("/* index sorted */"), plan(sql));
+    }
+    
+    @Test
+    void contractorTodayCountScansOneDayOfContractorDateIndex() throws Exception {
+        String scan = recordsScan(StatsDAO.TODAY_RECORDS_SQL);
+        
+        assertTrue(scan.contains("IDX_RECORDS_CONTRACTOR_DATE"), scan);
+        assertTrue(scan.contains("RECORD_DATE >= ?2"), scan);
+        assertTrue(scan.contains("RECORD_DATE < ?3"), scan);
+    }
+    
+    // The index comment on the records table in the plan of sql.
+    static String recordsScan(String sql) throws Exception {
+        String plan = plan(sql);
+        int table = plan.indexOf("\"PUBLIC\".\"RECORDS\"");
+        assertTrue(table >= 0, plan);
+        int start = plan.indexOf("/*", table);
+        return plan.substring(start, plan.indexOf("*/", start) + 2);
+    }
+    
+    static String plan(String sql) throws Exception {
+        try (Connection conn = DatabaseInitializer.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.mealscan.dao;
+
+import com.mealscan.model.Record;
+import com.mealscan.model.User;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+// Compares StatsDAO with the stream-based UserStatsServlet it replaced, reproduced below. Two
+// differences are intended: this month's earnings no longer take in the same month of earlier
+// years, and the average is rounded to cents instead of carrying a double's digits.
+class StatsDAOTest extends DatabaseTest {
+    
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 15);
+    
+    private static RecordDAO recordDAO;
+    private static UserDAO userDAO;
+    private static StatsDAO statsDAO;
+    private static User alice;
+    private static User bob;
+    
+    private record Baseline(int totalRecords, int totalStudents, long todayRecords, BigDecimal monthlyEarnings,
+                            BigDecimal monthlyEarningsThisYear, BigDecimal totalEarnings, BigDecimal avgMealCost,
+                            List<StatsDAO.RecentActivity> recentActivity) {}
+    
+    @BeforeAll
+    static void seed() throws Exception {
+        recordDAO = new RecordDAO(dataSource());
+        userDAO = new UserDAO(dataSource());
+        statsDAO = new StatsDAO(dataSource());
+        
+        alice = userDAO.createUser("alice@mealscan.com", "password123", "Alice", User.UserRole.STUDENT);
+        bob = userDAO.createUser("bob@mealscan.com", "password123", "Bob", User.UserRole.STUDENT);
+        
+        add(alice, CONTRACTOR_ID, "Dinner", "60.00", LocalDate.of(2024, 3, 10));
+        add(alice, CONTRACTOR_ID, "Lunch", "20.01", LocalDate.of(2025, 2, 20));
+        add(bob, CONTRACTOR_ID, "Lunch", "60.00", LocalDate.of(2025, 3, 2));
+        add(bob, CONTRACTOR_ID, "Breakfast", "33.33", TODAY);
+        add(alice, CONTRACTOR_ID, "Breakfast", "40.00", TODAY);
+        add(alice, CANTEEN_ID, "Snacks", "25.00", TODAY);
+    }
+    
+    @Test
+    void matchesStreamBasedStats() throws Exception {
+        assertMatchesBaseline();
+        
+        Baseline baseline = baseline(CONTRACTOR_ID);
+        assertNotEquals(0, baseline.monthlyEarnings().compareTo(baseline.monthlyEarningsThisYear()),
+                        "seed a record from this month of an earlier year");
+    }
+    
+    @Test
+    void matchesStreamBasedStatsAfterDeletes() throws Exception {
+        Record extra = add(bob, CONTRACTOR_ID, "Snacks", "15.50", TODAY.minusDays(1));
+        assertMatchesBaseline();
+        
+        recordDAO.deleteRecord(extra.getId(), CONTRACTOR_ID);
+        assertMatchesBaseline();
+        
+        User carol = userDAO.createUser("carol@mealscan.com", "password123", "Carol", User.UserRole.STUDENT);
+        add(carol, CONTRACTOR_ID, "Dinner", "55.55", TODAY.withDayOfMonth(1));
+        add(carol, CANTEEN_ID, "Snacks", "12.00", TODAY.withDayOfMonth(1));
+        assertMatchesBaseline();
+        
+        userDAO.deleteUser(carol.getId());
+        assertMatchesBaseline();
+    }
+    
+    private static void assertMatchesBaseline() throws Exception {
+        for (int contractorId : new int[] {CONTRACTOR_ID, CANTEEN_ID}) {
+            Baseline expected = baseline(contractorId);
+            StatsDAO.ContractorStats actual = statsDAO.getContractorStats(contractorId, TODAY);
+            
+            assertEquals(expected.totalRecords(), actual.totalRecords());
+            assertEquals(expected.totalStudents(), actual.totalStudents());
+            assertEquals(expected.todayRecords(), actual.todayRecords());
+            assertEquals(0, expected.totalEarnings().compareTo(actual.totalEarnings()),
+                         expected.totalEarnings() + " vs " + actual.totalEarnings());
+            assertEquals(0, expected.monthlyEarningsThisYear().compareTo(actual.monthlyEarnings()),
+                         expected.monthlyEarningsThisYear() + " vs " + actual.monthlyEarnings());
+            assertEquals(expected.avgMealCost().setScale(2, RoundingMode.HALF_UP), actual.avgMealCost());
+            assertEquals(expected.recentActivity(), actual.recentActivity());
+        }
+    }
+    
+    // The stream-based computation from the old UserStatsServlet, with LocalDate.now() as TODAY.
+    private static Baseline baseline(int contractorId) throws Exception {
+        List<Record> records = recordDAO.getRecordsByContractor(contractorId);
+        List<User> students = userDAO.getAllStudents();
+        
+        long todayRecords = records.stream()
+            .filter(r -> r.getRecordDate().equals(TODAY))
+            .count();
+        
+        BigDecimal monthlyEarnings = records.stream()
+            .filter(r -> r.getRecordDate().getMonth() == TODAY.getMonth())
+            .map(r -> BigDecimal.valueOf(r.getCost().doubleValue()))
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        
+        BigDecimal monthlyEarningsThisYear = records.stream()
+            .filter(r -> r.getRecordDate().getMonth() == TODAY.getMonth() && r.getRecordDate().getYear() == TODAY.getYear())
+            .map(r -> BigDecimal.valueOf(r.getCost().doubleValue()))
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        
+        BigDecimal totalEarnings = records.stream()
+            .map(r -> BigDecimal.valueOf(r.getCost().doubleValue()))
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        
+        double avgMealCost = records.isEmpty() ? 0 :
+            totalEarnings.doubleValue() / records.size();
+        
+        List<StatsDAO.RecentActivity> recentActivity = records.stream()
+            .limit(5)
+            .map(r -> new StatsDAO.RecentActivity(r.getStudentName(), r.getMealType(), r.getCost(),
+                                                  r.getRecordDate().toString()))
+            .toList();
+        
+        return new Baseline(records.size(), students.size(), todayRecords, monthlyEarnings, monthlyEarningsThisYear,
+                            totalEarnings, BigDecimal.valueOf(avgMealCost), recentActivity);
+    }
+    
+    // One transaction per record, a few milliseconds apart, so created_at orders same-day records
+    // the same way in both listings.
+    private static Record add(User student, int contractorId, String mealType, String cost, LocalDate date)
+            throws Exception {
+        Record record = recordDAO.createRecord(record(student.getId(), contractorId, mealType, cost, date));
+        Thread.sleep(5);
+        return record;
+    }
+}
@@ -0,0 +1,77 @@
+package com.mealscan.dao;
+
+import com.mealscan.model.Record;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadKeysTest extends DatabaseTest {
+    
+    private static final LocalDate DATE = LocalDate.of(2024, 10, 7);
+    
+    // A fresh map on each test, as after a restart; the upload_keys table carries over.
+    @BeforeEach
+    void restart() {
+        RecordIngestQueue.initialize(16, 8);
+        UploadKeys.initialize(UploadKeys.DEFAULT_CAPACITY, UploadKeys.DEFAULT_WINDOW);
+    }
+    
+    @Test
+    void storedKeyIsLeftOutOfTheGroupInsteadOfRollingItBack() throws Exception {
+        RecordDAO recordDAO = new RecordDAO(dataSource());
+        Record first = recordDAO.createRecords(List.of(record("Breakfast", "30.00", DATE)), List.of("group-a")).get(0);
+        
+        Record replay = record("Breakfast", "30.00", DATE);
+        Record fresh = record("Lunch", "50.00", DATE);
+        List<Record> inserted = recordDAO.createRecords(List.of(replay, fresh), List.of("group-a", "group-b"));
+        
+        assertEquals(1, inserted.size());
+        assertSame(fresh, inserted.get(0));
+        assertTrue(fresh.getId() > first.getId());
+    }
+    
+    @Test
+    void retryAfterRestartAnswersWithTheStoredRecord() throws Exception {
+        UploadKeys.Upload first = submit(record("Dinner", "60.00", DATE), "restart-a");
+        assertFalse(first.replayed());
+        
+        restart();
+        UploadKeys.Upload retry = submit(record("Dinner", "60.00", DATE), "restart-a");
+        assertTrue(retry.replayed());
+        assertEquals(first.record().getId(), retry.record().getId());
+    }
+    
+    @Test
+    void retryForDeletedRecordIsRefusedFromMemoryAndFromStore() throws Exception {
+        RecordDAO recordDAO = new RecordDAO(dataSource());
+        UploadKeys.Upload first = submit(record("Snacks", "15.00", DATE), "deleted-a");
+        assertTrue(UploadKeys.isRecent(CONTRACTOR_ID, "deleted-a"));
+        
+        recordDAO.deleteRecord(first.record().getId(), CONTRACTOR_ID);
+        assertFalse(UploadKeys.isRecent(CONTRACTOR_ID, "deleted-a"));
+        assertConflict(record("Snacks", "15.00", DATE), "deleted-a");
+        
+        restart();
+        assertConflict(record("Snacks", "15.00", DATE), "deleted-a");
+    }
+    
+    private static UploadKeys.Upload submit(Record record, String key) throws Exception {
+        return UploadKeys.submit(record, key).get(5, TimeUnit.SECONDS);
+    }
+    
+    private static void assertConflict(Record record, String key) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> submit(record, key));
+        assertInstanceOf(UploadKeys.KeyConflictException.class, e.getCause());
+    }
+}